@@ -9,11 +9,81 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+// Day1 has a batch mode on the incubating Vector API, it falls back to scalar code when the module isn't added at runtime
+tasks.compileJava {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
+// ./gradlew jmh -Pjmh.includes=Day5 -Pjmh.args="-p scale=1"
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with the GC profiler."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(providers.gradleProperty("jmh.includes").getOrElse(".*Benchmark.*"))
+    args("-prof", "gc")
+    args(providers.gradleProperty("jmh.args").getOrElse("").split(" ").filter { it.isNotBlank() })
+}
+
+// ./gradlew solve -Pdays="1 3 5" -Pinputs=build/inputs -Pcache=build/model-cache
+tasks.register<JavaExec>("solve") {
+    group = "application"
+    description = "Runs all solvers concurrently and prints a timing report."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("net.stiekema.jeroen.aoc2023.Runner")
+    providers.gradleProperty("inputs").orNull?.let { args("--inputs", it) }
+    providers.gradleProperty("cache").orNull?.let { args("--cache", it) }
+    providers.gradleProperty("cacheSize").orNull?.let { args("--cache-size", it) }
+    args(providers.gradleProperty("days").getOrElse("").split(" ").filter { it.isNotBlank() })
+}
+
+// ./gradlew generate -Pday=11 -Psize=100000 -Pseed=1
+tasks.register<JavaExec>("generate") {
+    group = "application"
+    description = "Writes a generated input for one day to build/inputs/dayN.txt."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("net.stiekema.jeroen.aoc2023.InputGenerators")
+    val day = providers.gradleProperty("day").getOrElse("1")
+    doFirst { layout.buildDirectory.dir("inputs").get().asFile.mkdirs() }
+    args(day,
+            providers.gradleProperty("size").getOrElse("1000"),
+            providers.gradleProperty("seed").getOrElse("1"),
+            layout.buildDirectory.file("inputs/day$day.txt").get().asFile.path)
+}
+
+// ./gradlew feed -Pday=4 -Pfile=input.txt -Pfollow, or without -Pfile to read stdin
+tasks.register<JavaExec>("feed") {
+    group = "application"
+    description = "Streams lines into the incremental solver of one day and prints the running answers."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("net.stiekema.jeroen.aoc2023.LineFeed")
+    standardInput = System.`in`
+    args(providers.gradleProperty("day").getOrElse("1"))
+    providers.gradleProperty("file").orNull?.let { args(it) }
+    if (providers.gradleProperty("follow").isPresent) args("--follow")
+}
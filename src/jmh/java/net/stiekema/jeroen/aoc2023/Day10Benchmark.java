@@ -0,0 +1,54 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses a generated maze with {@code scale} times as many tiles as the bundled 140 by 140 one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day10Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Day10.Maze maze;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.generate(10, Math.round(140 * Math.sqrt(scale))));
+        maze = Day10.buildMaze(input);
+    }
+
+    @Benchmark
+    public Day10.Maze parse() {
+        return Day10.buildMaze(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day10.calculatePart1(maze);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day10.calculatePart2(maze);
+    }
+}
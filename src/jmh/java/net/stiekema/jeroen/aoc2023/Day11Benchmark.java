@@ -0,0 +1,51 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day11Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Grid image;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.write("/day11.txt", scale, ScaledInput.repeatLines()));
+        image = Day11.parseImage(input);
+    }
+
+    @Benchmark
+    public Grid parse() {
+        return Day11.parseImage(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day11.calculate(image, 2);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day11.calculate(image, 1_000_000);
+    }
+}
@@ -0,0 +1,76 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day1Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Path file;
+    private Input input;
+
+    @Setup
+    public void setup() {
+        file = ScaledInput.write("/day1.txt", scale, ScaledInput.repeatLines());
+        input = Input.of(file);
+    }
+
+    /**
+     * Day 1 has no model to build, so parsing is just mapping the file and finding the line boundaries.
+     */
+    @Benchmark
+    public long parse() {
+        LongAdder lines = new LongAdder();
+        Input.of(file).forEachLine(line -> lines.increment());
+        return lines.sum();
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day1.calculate(input, Day1::calculateCalibrationValuePart1);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day1.calculate(input, Day1::calculateCalibrationValuePart2);
+    }
+
+    /**
+     * Part 1 over the whole mapped input with the Vector API, the fork adds the incubator module for it.
+     */
+    @Benchmark
+    public long part1Batch() {
+        return Day1.calculatePart1Batch(input);
+    }
+
+    @Benchmark
+    public long part1BatchScalar() {
+        return Day1.calculatePart1BatchScalar(input);
+    }
+
+    @Benchmark
+    public Day1.CalibrationValues bothParts() {
+        return Day1.calculateCalibrationValues(input);
+    }
+}
@@ -0,0 +1,81 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day2Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Day2.Games games;
+    private Day2.BagIndex index;
+    private Day2.CubeHolder[] bags;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.write("/day2.txt", scale, ScaledInput.repeatLines()));
+        games = Day2.parseGames(input);
+        index = Day2.BagIndex.of(games);
+        bags = new Day2.CubeHolder[1000];
+        for (int i = 0; i < bags.length; i++) {
+            bags[i] = new Day2.CubeHolder(i % 20, i / 20 % 20, i / 400 + 10);
+        }
+    }
+
+    @Benchmark
+    public Day2.Games parse() {
+        return Day2.parseGames(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day2.calculatePossibleGames(games, new Day2.CubeHolder(12, 13, 14));
+    }
+
+    @Benchmark
+    public Day2.BagIndex buildIndex() {
+        return Day2.BagIndex.of(games);
+    }
+
+    @Benchmark
+    public long manyBagsScanned() {
+        long result = 0;
+        for (Day2.CubeHolder bag : bags) {
+            result += Day2.calculatePossibleGames(games, bag);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long manyBagsIndexed() {
+        long result = 0;
+        for (Day2.CubeHolder bag : bags) {
+            result += Day2.calculatePossibleGames(index, bag);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day2.calculateMinimumCubes(games);
+    }
+}
@@ -0,0 +1,46 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day3Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Day3.Engine engine;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.write("/day3.txt", scale, ScaledInput.repeatLines()));
+        engine = Day3.buildEngine(input);
+    }
+
+    @Benchmark
+    public Day3.Engine parse() {
+        return Day3.buildEngine(input);
+    }
+
+    @Benchmark
+    public Day3.Parts scan() {
+        return engine.scan();
+    }
+}
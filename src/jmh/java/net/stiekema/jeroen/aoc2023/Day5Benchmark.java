@@ -0,0 +1,80 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses a generated almanac with 1,000 seeds per unit of scale; the brute force of part 2 walks every one of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day5Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Day5.Almanac almanac;
+    private List<Day5.SeedEntry> seedsPart1;
+    private List<Day5.SeedEntry> seedsPart2;
+    private long[] sortedSeeds;
+    private long[] locations;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.generate(5, 1_000L * scale));
+        almanac = Day5.parseAlmanac(input);
+        seedsPart1 = Day5.seedsPart1(almanac);
+        seedsPart2 = Day5.seedsPart2(almanac);
+        sortedSeeds = new SplittableRandom(1).longs(1_000_000, 0, 5_000_000_000L).sorted().toArray();
+        locations = new long[sortedSeeds.length];
+    }
+
+    @Benchmark
+    public Day5.Almanac parse() {
+        return Day5.parseAlmanac(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day5.calculateLowestLocationNrComposed(almanac, seedsPart1);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day5.calculateLowestLocationNrComposed(almanac, seedsPart2);
+    }
+
+    @Benchmark
+    public long part2Ranges() {
+        return Day5.calculateLowestLocationNrOfRanges(almanac, seedsPart2);
+    }
+
+    @Benchmark
+    public long[] batchLookup() {
+        almanac.seedToLocation().getAll(sortedSeeds, locations);
+        return locations;
+    }
+
+    @Benchmark
+    public long part2BruteForce() {
+        return Day5.calculateLowestLocationNr(almanac, seedsPart2);
+    }
+}
@@ -0,0 +1,59 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The day 6 input is always two lines with a handful of races; concatenating more races would overflow part 2, so
+ * the input is not scaled and {@code scale} only exists to keep the parameters the same for all days.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day6Benchmark {
+
+    @Param({"1"})
+    private int scale;
+
+    private Input input;
+    private List<Day6.Record> records;
+    private List<Day6.Record> recordsPart2;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.write("/day6.txt", scale, ScaledInput.unscaled()));
+        Day6.Races races = Day6.parseRaces(input);
+        records = races.records();
+        recordsPart2 = List.of(races.combinedRecord());
+    }
+
+    @Benchmark
+    public Day6.Races parse() {
+        return Day6.parseRaces(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day6.calculate(records);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day6.calculate(recordsPart2);
+    }
+}
@@ -0,0 +1,54 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses a generated network with about as many nodes per unit of scale as the bundled input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Day8Benchmark {
+
+    @Param({"1", "100", "10000"})
+    private int scale;
+
+    private Input input;
+    private Day8.Struct struct;
+
+    @Setup
+    public void setup() {
+        input = Input.of(ScaledInput.generate(8, 750L * scale));
+        struct = Day8.buildStruct(input);
+    }
+
+    @Benchmark
+    public Day8.Struct parse() {
+        return Day8.buildStruct(input);
+    }
+
+    @Benchmark
+    public long part1() {
+        return Day8.calculatePart1(struct);
+    }
+
+    @Benchmark
+    public long part2() {
+        return Day8.calculatePart2(struct);
+    }
+}
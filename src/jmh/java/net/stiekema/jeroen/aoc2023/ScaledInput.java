@@ -0,0 +1,87 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Writes a scaled copy of a bundled puzzle input, or a generated input of a similar size, to a temporary file, so the
+ * benchmarks can see how a solver behaves on inputs that are 1x, 100x or 10,000x the size of
+ * {@code src/main/resources/dayN.txt}.
+ */
+final class ScaledInput {
+
+    private ScaledInput() {
+    }
+
+    static Path write(String resourceName, int scale, Scaler scaler) {
+        try {
+            URL resource = ScaledInput.class.getResource(resourceName);
+            List<String> lines = Files.readAllLines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+            Path file = Files.createTempFile("aoc2023-" + scale + "x-", ".txt");
+            file.toFile().deleteOnExit();
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                scaler.write(lines, scale, writer);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes an input from {@link InputGenerators} with a fixed seed, for days whose bundled input can't simply be
+     * repeated.
+     */
+    static Path generate(int day, long size) {
+        try {
+            Path file = Files.createTempFile("aoc2023-day" + day + "-" + size + "-", ".txt");
+            file.toFile().deleteOnExit();
+            InputGenerators.write(day, size, 1, file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Repeats every line of the input {@code scale} times; valid for days where each line is an independent record
+     * and for grids that may simply grow downwards.
+     */
+    static Scaler repeatLines() {
+        return (lines, scale, writer) -> {
+            for (int i = 0; i < scale; i++) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        };
+    }
+
+    /**
+     * Leaves the input as it is, for days whose input has a fixed size.
+     */
+    static Scaler unscaled() {
+        return (lines, scale, writer) -> {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Scaler {
+        void write(List<String> lines, int scale, BufferedWriter writer) throws IOException;
+    }
+}
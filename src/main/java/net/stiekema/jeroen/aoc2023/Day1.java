@@ -1,19 +1,24 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
-public class Day1 {
+public class Day1 implements Solver<Day1.CalibrationValues> {
 
     private static final Map<String, Integer> NUMBER_MAP = Map.of(
             "one", 1,
@@ -27,76 +32,368 @@ public class Day1 {
             "nine", 9
     );
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
+    private static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static final NumberScanner DIGITS = NumberScanner.of(digits());
+    private static final NumberScanner DIGITS_AND_WORDS = NumberScanner.of(digitsAndWords());
+
+    private static Map<String, Integer> digits() {
+        Map<String, Integer> result = new HashMap<>();
+        for (int digit = 0; digit <= 9; digit++) {
+            result.put(Integer.toString(digit), digit);
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> digitsAndWords() {
+        Map<String, Integer> result = digits();
+        result.putAll(NUMBER_MAP);
+        return result;
+    }
+
+    public static void main(String[] args) {
+        CalibrationValues calibrationValues = calculateCalibrationValues(Input.of("/day1.txt"));
         System.out.println("part 1 test: " + calculatePart1Test());
-        System.out.println("part 1 55538?: " + calculatePart1());
+        System.out.println("part 1 55538?: " + calibrationValues.part1());
         System.out.println("part 2 test: " + calculatePart2Test());
-        System.out.println("part 2 54875?: " + calculatePart2());
+        System.out.println("part 2 54875?: " + calibrationValues.part2());
     }
 
-    private static int calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day1.class.getResource("/day1-1-test.txt");
-        return calculate(resource, Day1::calculateCalibrationValuePart1);
+    @Override
+    public int day() {
+        return 1;
+    }
+
+    @Override
+    public CalibrationValues parse(Input input) {
+        return calculateCalibrationValues(input);
+    }
+
+    @Override
+    public Object part1(CalibrationValues model) {
+        return model.part1();
     }
 
-    private static int calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day1.class.getResource("/day1.txt");
+    @Override
+    public Object part2(CalibrationValues model) {
+        return model.part2();
+    }
+
+    @Override
+    public IncrementalSolver incremental() {
+        return new Incremental();
+    }
+
+    private static long calculatePart1Test() {
+        URL resource = Day1.class.getResource("/day1-1-test.txt");
         return calculate(resource, Day1::calculateCalibrationValuePart1);
     }
 
-    private static int calculatePart2Test() throws URISyntaxException, IOException {
+    private static long calculatePart2Test() {
         URL resource = Day1.class.getResource("/day1-2-test.txt");
         return calculate(resource, Day1::calculateCalibrationValuePart2);
     }
 
-    private static int calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day1.class.getResource("/day1.txt");
-        return calculate(resource, Day1::calculateCalibrationValuePart2);
+    /**
+     * Both parts are a sum over the lines, so they are calculated in the same scan over the input.
+     */
+    static CalibrationValues calculateCalibrationValues(Input input) {
+        AtomicLong part1 = new AtomicLong();
+        AtomicLong part2 = new AtomicLong();
+        input.forEachLine(line -> {
+            part1.addAndGet(calculateCalibrationValuePart1(line));
+            part2.addAndGet(calculateCalibrationValuePart2(line));
+        });
+        return new CalibrationValues(part1.get(), part2.get());
+    }
+
+    private static long calculate(URL resource, ToIntFunction<Line> calibrationCalculator) {
+        return calculate(Input.of(resource), calibrationCalculator);
+    }
+
+    static long calculate(Input input, ToIntFunction<Line> calibrationCalculator) {
+        AtomicLong result = new AtomicLong();
+        input.forEachLine(line -> result.addAndGet(calibrationCalculator.applyAsInt(line)));
+        return result.get();
     }
 
-    private static int calculate(URL resource, Function<String, Integer> calibrationCalculator) throws URISyntaxException, IOException {
-        return getLines(resource)
-                .map(calibrationCalculator)
-                .reduce(Integer::sum)
-                .orElse(0);
+    static int calculateCalibrationValuePart1(Line line) {
+        return calculateCalibrationValue(line, DIGITS);
     }
 
-    private static int calculateCalibrationValuePart1(String line) {
-        Pattern pattern = Pattern.compile("[0-9]");
-        LinkedList<String> occurences = getOccurences(pattern, line);
-        return asInteger(occurences.peekFirst()) * 10 + asInteger(occurences.peekLast());
+    static int calculateCalibrationValuePart2(Line line) {
+        return calculateCalibrationValue(line, DIGITS_AND_WORDS);
     }
 
-    private static int calculateCalibrationValuePart2(String line) {
-        Pattern pattern = Pattern.compile(NUMBER_MAP.keySet().stream()
-                .reduce("[0-9]", (a, b) -> a + "|" + b));
-        LinkedList<String> occurences = getOccurences(pattern, line);
-        return asInteger(occurences.peekFirst()) * 10 + asInteger(occurences.peekLast());
+    private static int calculateCalibrationValue(Line line, NumberScanner scanner) {
+        int first = scanner.first(line);
+        if (first < 0) {
+            throw new IllegalStateException("no number found in line " + line.lineNr());
+        }
+        return first * 10 + scanner.last(line);
     }
 
-    private static LinkedList<String> getOccurences(Pattern pattern, String line) {
-        LinkedList<String> results = new LinkedList<>();
-        Matcher matcher = pattern.matcher(line);
-        while (matcher.find()) {
-            results.add(matcher.group());
-            matcher.region(matcher.start() + 1, line.length());
+    private static int calibrationValue(int first, int last) {
+        if (first < 0) {
+            throw new IllegalStateException("no digit found in a line of the batch");
         }
-        return results;
+        return first * 10 + last;
     }
 
-    private static int asInteger(String number) {
-        if (NUMBER_MAP.keySet().contains(number)) {
-            return NUMBER_MAP.get(number);
-        } else {
-            return Integer.parseInt(number);
+    /**
+     * Aho-Corasick automata of the numbers and of the reversed numbers, as dense tables with a transition per state and
+     * byte. No number contains another, so overlaps like "oneight" come out right.
+     */
+    static final class NumberScanner {
+        private final byte[] forward;
+        private final byte[] forwardValues;
+        private final byte[] backward;
+        private final byte[] backwardValues;
+
+        private NumberScanner(Map<String, Integer> numbers) {
+            Map<String, Integer> reversedNumbers = new HashMap<>();
+            numbers.forEach((number, value) -> reversedNumbers.put(new StringBuilder(number).reverse().toString(), value));
+            int forwardStates = countStates(numbers);
+            this.forward = new byte[forwardStates * 256];
+            this.forwardValues = new byte[forwardStates];
+            compile(numbers, forward, forwardValues);
+            int backwardStates = countStates(reversedNumbers);
+            this.backward = new byte[backwardStates * 256];
+            this.backwardValues = new byte[backwardStates];
+            compile(reversedNumbers, backward, backwardValues);
+        }
+
+        static NumberScanner of(Map<String, Integer> numbers) {
+            return new NumberScanner(numbers);
+        }
+
+        /**
+         * Value of the leftmost number in the line, or -1 when there is none.
+         */
+        int first(Line line) {
+            int state = 0;
+            for (int i = 0; i < line.length(); i++) {
+                state = forward[state << 8 | line.byteAt(i) & 0xff];
+                if (forwardValues[state] != 0) {
+                    return forwardValues[state] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Value of the rightmost number in the line, or -1 when there is none.
+         */
+        int last(Line line) {
+            int state = 0;
+            for (int i = line.length() - 1; i >= 0; i--) {
+                state = backward[state << 8 | line.byteAt(i) & 0xff];
+                if (backwardValues[state] != 0) {
+                    return backwardValues[state] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private static int countStates(Map<String, Integer> numbers) {
+            Set<String> prefixes = new HashSet<>();
+            numbers.keySet().forEach(number -> {
+                for (int i = 0; i <= number.length(); i++) {
+                    prefixes.add(number.substring(0, i));
+                }
+            });
+            if (prefixes.size() > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("too many states for a byte table: " + prefixes.size());
+            }
+            return prefixes.size();
+        }
+
+        /**
+         * Builds the trie of the numbers and turns it into a complete transition table using the failure links. A
+         * state's value is the number ending there plus one, or zero.
+         */
+        private static void compile(Map<String, Integer> numbers, byte[] transitions, byte[] values) {
+            Arrays.fill(transitions, (byte) -1);
+            int states = 1;
+            for (Map.Entry<String, Integer> number : numbers.entrySet()) {
+                int state = 0;
+                for (int i = 0; i < number.getKey().length(); i++) {
+                    int slot = state << 8 | number.getKey().charAt(i);
+                    if (transitions[slot] < 0) {
+                        transitions[slot] = (byte) states++;
+                    }
+                    state = transitions[slot];
+                }
+                values[state] = (byte) (number.getValue() + 1);
+            }
+
+            int[] failure = new int[values.length];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < 256; c++) {
+                if (transitions[c] < 0) {
+                    transitions[c] = 0;
+                } else {
+                    queue.add((int) transitions[c]);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                if (values[state] == 0) {
+                    values[state] = values[failure[state]];
+                }
+                for (int c = 0; c < 256; c++) {
+                    int slot = state << 8 | c;
+                    int fallback = transitions[failure[state] << 8 | c];
+                    if (transitions[slot] < 0) {
+                        transitions[slot] = (byte) fallback;
+                    } else {
+                        failure[transitions[slot]] = fallback;
+                        queue.add((int) transitions[slot]);
+                    }
+                }
+            }
         }
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    /**
+     * Part 1 over the whole input at once, with the Vector API when {@code jdk.incubator.vector} is available.
+     */
+    static long calculatePart1Batch(Input input) {
+        return VECTOR_API_AVAILABLE ? VectorBatch.calculatePart1(input) : calculatePart1BatchScalar(input);
     }
 
+    /**
+     * Scalar version of the batch: one pass over the bytes keeping the first and last digit of the current line.
+     */
+    static long calculatePart1BatchScalar(Input input) {
+        long[] result = new long[1];
+        input.forEachChunk(chunk -> {
+            long sum = 0;
+            int first = -1;
+            int last = -1;
+            int limit = chunk.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = chunk.get(i);
+                if (b == '\n') {
+                    sum += calibrationValue(first, last);
+                    first = -1;
+                    last = -1;
+                } else if (b >= '0' && b <= '9') {
+                    if (first < 0) first = b - '0';
+                    last = b - '0';
+                }
+            }
+            if (limit > 0 && chunk.get(limit - 1) != '\n') {
+                sum += calibrationValue(first, last);
+            }
+            result[0] += sum;
+        });
+        return result[0];
+    }
 
-}
+    /**
+     * Turns a vector of bytes at a time into a digit mask and a newline mask; only the lowest and highest digit of a
+     * line matter. {@code VectorMask.toLong} is slow on JDK 17, so the masks are gathered into bits with a multiply.
+     */
+    private static final class VectorBatch {
+        /**
+         * At most 64 lanes, so a mask fits in a long.
+         */
+        private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= Long.SIZE
+                ? ByteVector.SPECIES_PREFERRED
+                : ByteVector.SPECIES_512;
+
+        private static long calculatePart1(Input input) {
+            long[] result = new long[1];
+            input.forEachChunk(chunk -> result[0] += calculatePart1(chunk));
+            return result[0];
+        }
+
+        private static long calculatePart1(ByteBuffer chunk) {
+            long sum = 0;
+            int first = -1;
+            int last = -1;
+            int limit = chunk.limit();
+            int vectorLimit = SPECIES.loopBound(limit);
+            long[] lanes = new long[SPECIES.length() / 8];
+            int offset = 0;
+            for (; offset < vectorLimit; offset += SPECIES.length()) {
+                ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, chunk, offset, ByteOrder.nativeOrder());
+                long digits = toBits(bytes.compare(VectorOperators.GE, (byte) '0')
+                        .and(bytes.compare(VectorOperators.LE, (byte) '9')), lanes);
+                long newLines = toBits(bytes.compare(VectorOperators.EQ, (byte) '\n'), lanes);
+                while (newLines != 0) {
+                    int newLine = Long.numberOfTrailingZeros(newLines);
+                    long lineDigits = digits & ((1L << newLine) - 1);
+                    if (lineDigits != 0) {
+                        if (first < 0) first = digitAt(chunk, offset, Long.numberOfTrailingZeros(lineDigits));
+                        last = digitAt(chunk, offset, 63 - Long.numberOfLeadingZeros(lineDigits));
+                    }
+                    sum += calibrationValue(first, last);
+                    first = -1;
+                    last = -1;
+                    digits &= ~((2L << newLine) - 1);
+                    newLines &= newLines - 1;
+                }
+                if (digits != 0) {
+                    if (first < 0) first = digitAt(chunk, offset, Long.numberOfTrailingZeros(digits));
+                    last = digitAt(chunk, offset, 63 - Long.numberOfLeadingZeros(digits));
+                }
+            }
+            for (; offset < limit; offset++) {
+                byte b = chunk.get(offset);
+                if (b == '\n') {
+                    sum += calibrationValue(first, last);
+                    first = -1;
+                    last = -1;
+                } else if (b >= '0' && b <= '9') {
+                    if (first < 0) first = b - '0';
+                    last = b - '0';
+                }
+            }
+            if (limit > 0 && chunk.get(limit - 1) != '\n') {
+                sum += calibrationValue(first, last);
+            }
+            return sum;
+        }
+
+        private static long toBits(VectorMask<Byte> mask, long[] lanes) {
+            mask.toVector().reinterpretAsLongs().intoArray(lanes, 0);
+            long result = 0;
+            for (int i = 0; i < lanes.length; i++) {
+                result |= ((lanes[i] & 0x8040201008040201L) * 0x0101010101010101L) >>> 56 << (i * 8);
+            }
+            return result;
+        }
+
+        private static int digitAt(ByteBuffer chunk, int offset, int lane) {
+            return chunk.get(offset + lane) - '0';
+        }
+    }
+
+    record CalibrationValues(long part1, long part2) {}
 
+    /**
+     * Both running sums, updated per pushed line.
+     */
+    static class Incremental implements IncrementalSolver {
+        private volatile long part1;
+        private volatile long part2;
 
+        @Override
+        public void accept(Line line) {
+            part1 += calculateCalibrationValuePart1(line);
+            part2 += calculateCalibrationValuePart2(line);
+        }
+
+        @Override
+        public Object part1() {
+            return part1;
+        }
+
+        @Override
+        public Object part2() {
+            return part2;
+        }
+    }
+}
@@ -1,395 +1,305 @@
 package net.stiekema.jeroen.aoc2023;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-public class Day10 {
-
-    public static void main(String[] args) throws URISyntaxException, IOException {
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public class Day10 implements Solver<Day10.Maze> {
+
+    public static void main(String[] args) {
 //        System.out.println("Part 1 test: " + calculatePart1("/day10-test.txt"));
 //        System.out.println("Part 1: " + calculatePart1("/day10.txt"));
         System.out.println("Part 2 test: " + calculatePart2("/day10-test-2.txt"));
         System.out.println("Part 2: " + calculatePart2("/day10.txt"));
     }
 
-    public static long calculatePart1(String file) throws URISyntaxException, IOException {
-        Maze.Builder builder = new Maze.Builder();
-        getLines(file).forEach(builder::addLine);
-        Maze maze = builder.build();
+    @Override
+    public int day() {
+        return 10;
+    }
+
+    @Override
+    public Maze parse(Input input) {
+        return buildMaze(input);
+    }
+
+    @Override
+    public Object part1(Maze model) {
+        return calculatePart1(model);
+    }
+
+    @Override
+    public Object part2(Maze model) {
+        return calculatePart2(model);
+    }
+
+    @Override
+    public ModelCodec<Maze> codec() {
+        return new MazeCodec();
+    }
+
+    public static long calculatePart1(String file) {
+        return calculatePart1(buildMaze(Input.of(file)));
+    }
+
+    private static long calculatePart2(String file) {
+        return calculatePart2(buildMaze(Input.of(file)));
+    }
+
+    static Maze buildMaze(Input input) {
+        return Maze.trace(Grid.parse(input, 1, (byte) '.'));
+    }
+
+    static long calculatePart1(Maze maze) {
 //        System.out.printf(maze.toString());
-        List<Node> routeNodes = maze.findRouteNodes();
-        return (long) Math.ceil((double) (routeNodes.size() / 2L));
+        return maze.loopLength / 2;
     }
 
-    private static long calculatePart2(String file) throws URISyntaxException, IOException {
-        Maze.Builder builder = new Maze.Builder();
-        getLines(file).forEach(builder::addLine);
-        Maze maze = builder.build();
+    static long calculatePart2(Maze maze) {
 //        System.out.println(maze);
         EnclosedTilesCalculator calculator = new EnclosedTilesCalculator(maze);
         return calculator.calculateNrOfEnclosedTiles();
     }
 
 
-    private static Stream<String> getLines(String fileName) throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource(fileName);
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
-    }
-
-    private static class Maze {
+    /**
+     * The tiles in a {@link Grid} with a halo of ground, and the tiles of the loop through the starting point as a
+     * bitset over the grid indices. The pipe under the starting point is derived from the neighbours connecting to it.
+     */
+    static class Maze {
 
-        private long width, height;
-        private Map<Coordinate, Node> nodes;
-        private final Node startingPoint;
+        private final Grid grid;
+        private final int startingPoint;
+        private final int startConnections;
+        private final BitSet loop;
+        private final int loopLength;
 
-        private Maze(long width, long height, Map<Coordinate, Node> nodes, Node startingPoint) {
-            this.width = width;
-            this.height = height;
-            this.nodes = nodes;
+        private Maze(Grid grid, int startingPoint, int startConnections, BitSet loop, int loopLength) {
+            this.grid = grid;
             this.startingPoint = startingPoint;
+            this.startConnections = startConnections;
+            this.loop = loop;
+            this.loopLength = loopLength;
         }
 
-        public Node getStartingPoint() {
-            return startingPoint;
-        }
+        private static Maze trace(Grid grid) {
+            int startingPoint = grid.indexOf((byte) 'S');
+            if (startingPoint < 0) {
+                throw new IllegalStateException("no starting point");
+            }
+            int startConnections = 0;
+            for (int direction = Grid.NORTH; direction <= Grid.WEST; direction++) {
+                int neighbour = grid.neighbour(startingPoint, direction);
+                if ((NodeType.of(grid.get(neighbour)).connections & bit(Grid.opposite(direction))) != 0) {
+                    startConnections |= bit(direction);
+                }
+            }
 
-        public List<Node> findRouteNodes() {
-            List<Node> result = new ArrayList<>();
-            Node currentNode = getStartingPoint();
+            Instrumentation.BatchEvent batch = Instrumentation.beginBatch("loop trace");
+            BitSet loop = new BitSet(grid.size());
+            int loopLength = 0;
+            int current = startingPoint;
+            int direction = Integer.numberOfTrailingZeros(startConnections);
             do {
-                result.add(currentNode);
-                currentNode = currentNode.next;
-            } while (!currentNode.isStartingPoint());
-            return result;
+                loop.set(current);
+                current = grid.neighbour(current, direction);
+                int connections = current == startingPoint ? startConnections : NodeType.of(grid.get(current)).connections;
+                direction = Integer.numberOfTrailingZeros(connections & ~bit(Grid.opposite(direction)));
+                if (direction > Grid.WEST) {
+                    throw new IllegalStateException("loop is broken at " + grid.x(current) + "," + grid.y(current));
+                }
+                loopLength++;
+            } while (current != startingPoint);
+            Instrumentation.endBatch(batch, loopLength);
+            Instrumentation.count(MetricsSink.Counter.LOOKUPS, 2 * loopLength);
+
+            return new Maze(grid, startingPoint, startConnections, loop, loopLength);
+        }
+
+        private int connections(int index) {
+            return index == startingPoint ? startConnections : NodeType.of(grid.get(index)).connections;
+        }
+
+        private boolean isOnLoop(int index) {
+            return loop.get(index);
         }
 
         public String toString() {
             StringBuilder sb = new StringBuilder();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    sb.append(nodes.get(new Coordinate(x, y)).nodeType.ascii);
+            for (int y = 0; y < grid.height(); y++) {
+                for (int x = 0; x < grid.width(); x++) {
+                    sb.append(NodeType.of(grid.get(x, y)).ascii);
                 }
                 sb.append('\n');
             }
             return sb.toString();
         }
+    }
 
-        private static class Builder {
-            private final List<String> lines = new ArrayList<>();
+    /**
+     * Stores the tiles and the loop bitset, so reading a snapshot doesn't have to trace the loop again.
+     */
+    static class MazeCodec implements ModelCodec<Maze> {
 
-            private void addLine(String line) {
-                lines.add(line);
-            }
-
-            private Maze build() {
-                int width = lines.isEmpty() ? 0 : lines.get(0).length();
-                int height = lines.size();
-                Map<Coordinate, Node> nodes = new HashMap<>();
-                Node startingPoint = null;
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        NodeType nodeType = NodeType.of(lines.get(y).charAt(x));
-                        Coordinate coordinate = new Coordinate(x, y);
-                        Node node = new Node(coordinate, nodeType);
-                        nodes.put(coordinate, node);
-                        if (node.isStartingPoint()) {
-                            startingPoint = node;
-                        }
-                    }
-                }
+        @Override
+        public int version() {
+            return 2;
+        }
 
-                Node previous = null;
-                Node current = startingPoint;
-
-                do {
-                    Node finalPrevious = previous;
-                    Node next = current.nodeType.findPossibleNeighbours(current.coordinate)
-                            .entrySet()
-                            .stream().filter(t -> withinBoundaries(t.getKey(), width, height))
-                            .filter(entry -> {
-                                Node neighbourNode = nodes.get(entry.getKey());
-                                return (neighbourNode != null && entry.getValue().contains(neighbourNode.nodeType));
-                            })
-                            .map(Map.Entry::getKey)
-                            .map(nodes::get)
-                            .filter( t -> !t.equals(finalPrevious))
-                            .filter(t -> t.previous == null)
-                            .findFirst().orElseThrow();
-                    current.next = next;
-                    next.previous = current;
-                    previous = current;
-                    current = next;
-                } while (!current.isStartingPoint());
-
-                return new Maze(width, height, nodes, startingPoint);
-            }
+        @Override
+        public void write(Maze maze, DataOutputStream out) throws IOException {
+            out.writeInt(maze.grid.width());
+            out.writeInt(maze.grid.height());
+            byte[] cells = maze.grid.copyOfCells();
+            out.write(cells);
+            out.writeInt(maze.startingPoint);
+            out.writeInt(maze.startConnections);
+            out.writeInt(maze.loopLength);
+            ModelCache.writeLongs(maze.loop.toLongArray(), out);
+        }
 
-            private static boolean withinBoundaries(Coordinate c, int width, int height) {
-                return c.x() >= 0 && c.x() < width && c.y >= 0 && c.y < height;
-            }
+        @Override
+        public Maze read(ByteBuffer snapshot) {
+            int width = snapshot.getInt();
+            int height = snapshot.getInt();
+            byte[] cells = new byte[(width + 2) * (height + 2)];
+            snapshot.get(cells);
+            Grid grid = Grid.of(cells, width, height, 1);
+            int startingPoint = snapshot.getInt();
+            int startConnections = snapshot.getInt();
+            int loopLength = snapshot.getInt();
+            BitSet loop = BitSet.valueOf(ModelCache.readLongs(snapshot));
+            return new Maze(grid, startingPoint, startConnections, loop, loopLength);
         }
     }
 
     private static class EnclosedTilesCalculator {
         private final Maze maze;
-        private final Map<Coordinate, Node> routeNodes;
-        private final Map<Coordinate, Node> nonRouteNodes;
+        private final Grid grid;
 
         private EnclosedTilesCalculator(Maze maze) {
             this.maze = maze;
-            List<Node> routeNodes = this.maze.findRouteNodes();
-            this.routeNodes = routeNodes.stream().collect(Collectors.toMap(k -> k.coordinate, v -> v));
-            this.nonRouteNodes = this.maze.nodes.values().stream()
-                    .filter(Predicate.not(routeNodes::contains))
-                    .collect(Collectors.toMap(k -> k.coordinate, v -> v));
+            this.grid = maze.grid;
         }
-        
-        public long calculateNrOfEnclosedTiles() {
-            return this.nonRouteNodes.values()
-                    .stream()
-                    .filter(this::isEnclosed)
-                    .count();
 
-        }
-
-        private boolean isEnclosed(Node node) {
-            int crossingLinesLeft = findCrossingLinesLeft(node);
-            int crossingLinesRight = findCrossingLinesRight(node);
-            int crossingLinesTop = findCrossingLineTop(node);
-            int crossingLinesBottom = findCrossingLineBottom(node);
-
-            return crossingLinesLeft % 2 != 0
-                    && crossingLinesRight % 2 != 0
-                    && crossingLinesTop % 2 != 0
-                    && crossingLinesBottom % 2 != 0;
-        }
-
-        private int findCrossingLinesLeft(Node node) {
-            int result = 0;
-            Node previousNode = null;
-            for (int x = 0; x < node.coordinate.x; x++) {
-                Node foundNode = routeNodes.get(new Coordinate(x, node.coordinate.y));
-                if (foundNode != null && !connected(previousNode, foundNode) && crossesY(foundNode)) {
-                    result++;
-                }
-                previousNode = foundNode;
-            }
-            return result;
-        }
-
-        private int findCrossingLinesRight(Node node) {
-            int result = 0;
-            Node previousNode = null;
-            for (int x = node.coordinate.x + 1; x < maze.width; x++) {
-                Node foundNode = routeNodes.get(new Coordinate(x, node.coordinate.y));
-                if (foundNode != null && !connected(previousNode, foundNode) && crossesY(foundNode)) {
-                    result++;
+        public long calculateNrOfEnclosedTiles() {
+            Instrumentation.BatchEvent batch = Instrumentation.beginBatch("enclosed tiles");
+            long result = 0;
+            long nonRouteTiles = 0;
+            for (int y = 0; y < grid.height(); y++) {
+                for (int x = 0; x < grid.width(); x++) {
+                    if (!maze.isOnLoop(grid.index(x, y))) {
+                        nonRouteTiles++;
+                        if (isEnclosed(x, y)) {
+                            result++;
+                        }
+                    }
                 }
-                previousNode = foundNode;
             }
+            Instrumentation.endBatch(batch, nonRouteTiles);
+            // every tile looks up each other tile on its row and its column
+            Instrumentation.count(MetricsSink.Counter.LOOKUPS, nonRouteTiles * (grid.width() + grid.height() - 2));
             return result;
         }
 
-        private int findCrossingLineTop(Node node) {
-            int result = 0;
-            Node previousNode = null;
-            for (int y = 0; y < node.coordinate.y; y++) {
-                Node foundNode = routeNodes.get(new Coordinate(node.coordinate.x, y));
-                if (foundNode != null && !connected(previousNode, foundNode) && crossesX(foundNode)) {
-                    result++;
-                }
-                previousNode = foundNode;
-            }
-            return result;
+        private boolean isEnclosed(int x, int y) {
+            return findCrossingLines(0, x, y, y + 1, Grid.EAST) % 2 != 0
+                    && findCrossingLines(x + 1, grid.width(), y, y + 1, Grid.EAST) % 2 != 0
+                    && findCrossingLines(x, x + 1, 0, y, Grid.SOUTH) % 2 != 0
+                    && findCrossingLines(x, x + 1, y + 1, grid.height(), Grid.SOUTH) % 2 != 0;
         }
 
-        private int findCrossingLineBottom(Node node) {
+        /**
+         * Counts the separate stretches of the loop in the row or column segment that cross it, walking in
+         * {@code direction}.
+         */
+        private int findCrossingLines(int fromX, int toX, int fromY, int toY, int direction) {
             int result = 0;
-            Node previousNode = null;
-            for (int y = node.coordinate.y + 1; y < maze.height; y++) {
-                Node foundNode = routeNodes.get(new Coordinate(node.coordinate.x, y));
-                if (foundNode != null && !connected(previousNode, foundNode) && crossesX(foundNode)) {
-                    result++;
+            int previous = -1;
+            for (int y = fromY; y < toY; y++) {
+                for (int x = fromX; x < toX; x++) {
+                    int index = grid.index(x, y);
+                    int found = maze.isOnLoop(index) ? index : -1;
+                    if (found >= 0 && !connected(previous, direction) && crosses(found, direction)) {
+                        result++;
+                    }
+                    previous = found;
                 }
-                previousNode = foundNode;
             }
             return result;
         }
 
-        private boolean connected(Node nodeA, Node nodeB) {
-            if (nodeA == null || nodeB == null) {
-                return false;
-            }
-            return nodeA.next == nodeB || nodeA.previous == nodeB;
+        private boolean connected(int previous, int direction) {
+            return previous >= 0 && (maze.connections(previous) & bit(direction)) != 0;
         }
 
-        private boolean crossesY(Node node) {
-            int previousY;
-            Node currentNode = node;
-            do {
-                currentNode = currentNode.previous;
-                previousY = currentNode.coordinate.y;
-            } while (previousY == node.coordinate.y);
-
-            int nextY;
-            currentNode = node;
-            do {
-                currentNode = currentNode.next;
-                nextY = currentNode.coordinate.y;
-            } while (nextY == node.coordinate.y);
-
-            return previousY != nextY;
+        /**
+         * Whether the stretch of loop through {@code index} that runs along {@code direction} leaves it on opposite
+         * sides, which is when it crosses the row or column it lies on.
+         */
+        private boolean crosses(int index, int direction) {
+            int connections = maze.connections(index);
+            int first = Integer.numberOfTrailingZeros(connections);
+            int second = Integer.numberOfTrailingZeros(connections & ~bit(first));
+            return leave(index, first, direction) != leave(index, second, direction);
         }
 
-        private boolean crossesX(Node node) {
-            int previousX;
-            Node currentNode = node;
-            do {
-                currentNode = currentNode.previous;
-                previousX = currentNode.coordinate.x;
-            } while (previousX == node.coordinate.x);
-
-            int nextX;
-            currentNode = node;
-            do {
-                currentNode = currentNode.next;
-                nextX = currentNode.coordinate.x;
-            } while (nextX == node.coordinate.x);
-
-            return previousX != nextX;
+        private int leave(int index, int first, int direction) {
+            boolean horizontal = direction == Grid.EAST;
+            int start = horizontal ? grid.y(index) : grid.x(index);
+            int current = index;
+            int step = first;
+            while (true) {
+                current = grid.neighbour(current, step);
+                int position = horizontal ? grid.y(current) : grid.x(current);
+                if (position != start) {
+                    return position;
+                }
+                step = Integer.numberOfTrailingZeros(maze.connections(current) & ~bit(Grid.opposite(step)));
+            }
         }
     }
 
-    private static class Node {
-        private final Coordinate coordinate;
-        private final NodeType nodeType;
-        private Node next;
-        private Node previous;
-
-        public Node(Coordinate coordinate, NodeType nodeType) {
-            this.coordinate = coordinate;
-            this.nodeType = nodeType;
-        }
-
-        public boolean isStartingPoint() {
-            return this.nodeType == NodeType.START;
-        }
-
-        public void connect(Node node) {
-            if (this.next == null) {
-                this.next = node;
-                node.previous = this;
-            } else if (this.previous == null) {
-                this.previous = node;
-                node.next = this;
-            } else {
-                throw new IllegalStateException();
-            }
-        }
+    private static int bit(int direction) {
+        return 1 << direction;
     }
 
     private enum NodeType {
-        NS('|', '│'),
-        EW('-', '─'),
-        NE('L', '└'),
-        NW('J', '┘'),
-        SW('7', '┐'),
-        SE('F', '┌'),
-        GROUND('.', '.'),
-        START('S', '┼');
+        NS('|', '│', bit(Grid.NORTH) | bit(Grid.SOUTH)),
+        EW('-', '─', bit(Grid.EAST) | bit(Grid.WEST)),
+        NE('L', '└', bit(Grid.NORTH) | bit(Grid.EAST)),
+        NW('J', '┘', bit(Grid.NORTH) | bit(Grid.WEST)),
+        SW('7', '┐', bit(Grid.SOUTH) | bit(Grid.WEST)),
+        SE('F', '┌', bit(Grid.SOUTH) | bit(Grid.EAST)),
+        GROUND('.', '.', 0),
+        START('S', '┼', bit(Grid.NORTH) | bit(Grid.EAST) | bit(Grid.SOUTH) | bit(Grid.WEST));
+
+        private static final NodeType[] BY_BYTE = new NodeType[128];
+
+        static {
+            for (NodeType nodeType : values()) {
+                BY_BYTE[nodeType.c] = nodeType;
+            }
+        }
 
         private final char c;
         private final char ascii;
+        // the directions of Grid this pipe connects to, as bits
+        private final int connections;
 
-        NodeType(char c, char ascii) {
+        NodeType(char c, char ascii, int connections) {
             this.c = c;
             this.ascii = ascii;
+            this.connections = connections;
         }
 
-        private static NodeType of(char c) {
-            return Arrays.stream(NodeType.values())
-                    .filter(e -> e.c == c)
-                    .findFirst()
-                    .orElseThrow();
-        }
-
-        private Map<Coordinate, List<NodeType>> findPossibleNeighbours(Coordinate c) {
-            return switch (this) {
-                case NE -> Map.of(
-                        coordNorth(c), compatibleTypesNorth(),
-                        coordEast(c), compatibleTypesEast());
-                case NW -> Map.of(
-                        coordNorth(c), compatibleTypesNorth(),
-                        coordWest(c), compatibleTypesWest());
-                case NS -> Map.of(
-                        coordNorth(c), compatibleTypesNorth(),
-                        coordSouth(c), compatibleTypesSouth());
-                case EW -> Map.of(
-                        coordEast(c), compatibleTypesEast(),
-                        coordWest(c), compatibleTypesWest());
-                case SW -> Map.of(
-                        coordSouth(c), compatibleTypesSouth(),
-                        coordWest(c), compatibleTypesWest());
-                case SE -> Map.of(
-                        coordSouth(c), compatibleTypesSouth(),
-                        coordEast(c), compatibleTypesEast());
-                case START -> Map.of(
-                        coordNorth(c), compatibleTypesNorth(),
-                        coordSouth(c), compatibleTypesSouth(),
-                        coordEast(c), compatibleTypesEast(),
-                        coordWest(c), compatibleTypesWest());
-                default -> Collections.emptyMap();
-            };
-        }
-
-        private static Coordinate coordNorth(Coordinate c) {
-            return new Coordinate(c.x, c.y - 1);
-        }
-
-        private static Coordinate coordSouth(Coordinate c) {
-            return new Coordinate(c.x, c.y + 1);
-        }
-
-        private static Coordinate coordEast(Coordinate c) {
-            return new Coordinate(c.x + 1, c.y);
-        }
-
-        private static Coordinate coordWest(Coordinate c) {
-            return new Coordinate(c.x - 1, c.y);
-        }
-
-        private static List<NodeType> compatibleTypesNorth() {
-            return List.of(NS, SW, SE, START);
-        }
-
-        private static List<NodeType> compatibleTypesSouth() {
-            return List.of(NE, NW, NS, START);
-        }
-
-        private static List<NodeType> compatibleTypesEast() {
-            return List.of(EW, NW, SW, START);
-        }
-
-        private static List<NodeType> compatibleTypesWest() {
-            return List.of(EW, NE, SE, START);
+        private static NodeType of(byte c) {
+            NodeType result = c >= 0 ? BY_BYTE[c] : null;
+            if (result == null) {
+                throw new IllegalArgumentException("unknown tile '" + (char) c + "'");
+            }
+            return result;
         }
     }
-
-    private record Coordinate(int x, int y) {}
 }
@@ -1,33 +1,45 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Stream;
 
-public class Day11 {
+public class Day11 implements Solver<Grid> {
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("part 1 test: " + calculate("/day11-test.txt", 2));
-        System.out.println("part 1: " + calculate("/day11.txt", 2));
-        System.out.println("part 2 test: " + calculate("/day11-test.txt", 10));
-        System.out.println("part 2: " + calculate("/day11.txt", 1_000_000));
+    public static void main(String[] args) {
+        Grid testImage = parseImage(Input.of("/day11-test.txt"));
+        Grid image = parseImage(Input.of("/day11.txt"));
+        System.out.println("part 1 test: " + calculate(testImage, 2));
+        System.out.println("part 1: " + calculate(image, 2));
+        System.out.println("part 2 test: " + calculate(testImage, 10));
+        System.out.println("part 2: " + calculate(image, 1_000_000));
     }
 
-    private static long calculate(String file, int replaceFactor) throws URISyntaxException, IOException {
-        List<String> lines = getLines(file).toList();
-        Character[][] image = new Character[lines.size()][lines.get(0).length()];
-        for (int y = 0; y < lines.size(); y++) {
-            for (int x = 0; x < lines.get(0).length(); x++) {
-                image[y][x] = lines.get(y).charAt(x);
-            }
-        }
+    @Override
+    public int day() {
+        return 11;
+    }
+
+    @Override
+    public Grid parse(Input input) {
+        return parseImage(input);
+    }
+
+    @Override
+    public Object part1(Grid model) {
+        return calculate(model, 2);
+    }
+
+    @Override
+    public Object part2(Grid model) {
+        return calculate(model, 1_000_000);
+    }
+
+    static Grid parseImage(Input input) {
+        return Grid.parse(input, 0, (byte) '.');
+    }
+
+    static long calculate(Grid image, int replaceFactor) {
         List<Coord> galaxyCoordinates = getGalaxyCoordinates(image, replaceFactor);
         return calculateDistanceOfPairs(galaxyCoordinates);
     }
@@ -48,19 +60,19 @@ public class Day11 {
                 + Math.max(a.y, b.y) - Math.min(a.y, b.y);
     }
 
-    private static List<Coord> getGalaxyCoordinates(Character[][] image, int replaceFactor) {
+    private static List<Coord> getGalaxyCoordinates(Grid image, int replaceFactor) {
         List<Coord> result = new ArrayList<>();
-        List<Integer> emptyXPositions = findEmptyXPositions(image);
-        List<Integer> emptyYPositions = findEmptyYPositions(image);
+        BitSet nonEmptyXPositions = image.columnsContaining((byte) '#');
+        BitSet nonEmptyYPositions = image.rowsContaining((byte) '#');
         long expandedY = 0;
         long expandedX = 0;
 
-        for (int y = 0; y < image.length; y++) {
-            for (int x = 0; x < image[0].length; x++) {
-                if (image[y][x] == '#') {
+        for (int y = 0; y < image.height(); y++) {
+            for (int x = 0; x < image.width(); x++) {
+                if (image.get(x, y) == '#') {
                     result.add(new Coord(expandedX, expandedY));
                 }
-                if (emptyXPositions.contains(x)) {
+                if (!nonEmptyXPositions.get(x)) {
                     expandedX += replaceFactor;
                 } else {
                     expandedX++;
@@ -68,7 +80,7 @@ public class Day11 {
             }
             expandedX = 0;
 
-            if (emptyYPositions.contains(y)) {
+            if (!nonEmptyYPositions.get(y)) {
                 expandedY += replaceFactor;
             } else {
                 expandedY++;
@@ -77,34 +89,5 @@ public class Day11 {
         return result;
     }
 
-    private static List<Integer> findEmptyXPositions(Character[][] image) {
-        List<Integer> result = new ArrayList<>();
-        for (int x = 0; x < image[0].length; x++) {
-            boolean galaxyFound = false;
-            for (Character[] chars : image) {
-                if (chars[x] == '#') {
-                    galaxyFound = true;
-                    break;
-                }
-            }
-            if (!galaxyFound) result.add(x);
-        }
-        return result;
-    }
-
-    private static List<Integer> findEmptyYPositions(Character[][] image) {
-        List<Integer> result = new ArrayList<>();
-        for (int y = 0; y < image.length; y++) {
-            if (Arrays.stream(image[y]).noneMatch(c -> c == '#')) result.add(y);
-        }
-        return result;
-    }
-
-    private static Stream<String> getLines(String fileName) throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource(fileName);
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
-    }
-
-
     private record Coord(long x, long y) {}
 }
@@ -1,177 +1,432 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.Map;
 
-public class Day2 {
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("part 1 test: " + calculatePart1Test());
-        System.out.println("part 1 1931?: " + calculatePart1());
-        System.out.println("part 2 test: " + calculatePart2Test());
-        System.out.println("part 2 83105?: " + calculatePart2());
+public class Day2 implements Solver<Day2.Games> {
+    private static final CubeHolder BAG = new CubeHolder(12, 13, 14);
+
+    public static void main(String[] args) {
+        Games testGames = parseGames(Input.of("/day2-1-test.txt"));
+        Games games = parseGames(Input.of("/day2.txt"));
+        System.out.println("part 1 test: " + calculatePossibleGames(testGames, BAG));
+        System.out.println("part 1 1931?: " + calculatePossibleGames(games, BAG));
+        System.out.println("part 2 test: " + calculateMinimumCubes(testGames));
+        System.out.println("part 2 83105?: " + calculateMinimumCubes(games));
+    }
+
+    @Override
+    public int day() {
+        return 2;
     }
 
-    private static int calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day2-1-test.txt");
-        CubeHolder bag = new CubeHolder(12, 13, 14);
-        return calculatePossibleGames(resource, bag);
+    @Override
+    public Games parse(Input input) {
+        return parseGames(input);
     }
 
-    private static int calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day2.txt");
-        CubeHolder bag = new CubeHolder(12, 13, 14);
-        return calculatePossibleGames(resource, bag);
+    @Override
+    public Object part1(Games model) {
+        return calculatePossibleGames(model, BAG);
     }
 
-    private static int calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day2-1-test.txt");
-        return calculateMinimumCubes(resource);
+    @Override
+    public Object part2(Games model) {
+        return calculateMinimumCubes(model);
     }
 
-    private static int calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day2.txt");
-        return calculateMinimumCubes(resource);
+    @Override
+    public IncrementalSolver incremental() {
+        return new Incremental(BAG);
     }
 
-    private static int calculatePossibleGames(URL resource, CubeHolder bag) throws URISyntaxException, IOException {
-        return getLines(resource)
-                .map(Day2::convertToGame)
-                .filter(t -> t.isPossibleWithBag(bag))
-                .map(Game::getId)
-                .reduce(Integer::sum)
-                .orElseThrow();
+    static Games parseGames(Input input) {
+        Games.Builder builder = new Games.Builder();
+        input.forEachLine(builder::addLine);
+        return builder.build();
     }
 
-    private static int calculateMinimumCubes(URL resource) throws URISyntaxException, IOException {
-        return getLines(resource)
-                .map(Day2::convertToGame)
-                .map(Game::getMinimumBag)
-                .map(CubeHolder::getPower)
-                .reduce(Integer::sum)
-                .orElseThrow();
+    static long calculatePossibleGames(Games games, CubeHolder bag) {
+        int[] limits = bag.toColumns(games.palette);
+        long result = 0;
+        for (int i = 0; i < games.size(); i++) {
+            if (games.fits(i, limits)) {
+                result += games.id[i];
+            }
+        }
+        return result;
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    /**
+     * Same as {@link #calculatePossibleGames(Games, CubeHolder)}, but answered from an index that can be queried for
+     * many bags.
+     */
+    static long calculatePossibleGames(BagIndex index, CubeHolder bag) {
+        return index.sumOfPossibleIds(bag);
     }
 
-    private static Game convertToGame(String line) {
-        int id = getGameId(line);
-        String parts = line.substring(line.indexOf(":") + 1).trim();
-        List<CubeHolder> cubeSets = Arrays.stream(parts.split(";"))
-                .map(String::trim)
-                .map(CubeHolder::asCubeHolder)
-                .toList();
-        return new Game(id, cubeSets);
+    static long calculateMinimumCubes(Games games) {
+        long result = 0;
+        for (int i = 0; i < games.size(); i++) {
+            long power = 1;
+            for (int[] column : games.maxima) {
+                power *= column[i];
+            }
+            result += power;
+        }
+        return result;
     }
 
-    private static int getGameId(String line) {
-        Pattern pattern = Pattern.compile("Game ([0-9]+).*?");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String result = matcher.group(1);
-            return Integer.parseInt(result);
-        } else {
+    /**
+     * Reads one game, writing the highest count of every color to {@code maxima} by palette column, and returns its id.
+     */
+    private static int parseGame(Line line, Palette palette, int[] maxima) {
+        if (!line.startsWith("Game ")) {
             throw new IllegalStateException("no id found for line '" + line + "'");
         }
+        int id = line.nextInt();
+        line.skipPast(':');
+        Arrays.fill(maxima, 0);
+        while (line.hasNextNumber()) {
+            int count = line.nextInt();
+            int start = line.skipWhitespace().position();
+            int end = start;
+            while (end < line.length() && isLetter(line.byteAt(end))) {
+                end++;
+            }
+            if (start == end) {
+                throw new IllegalStateException("no color in line " + line.lineNr() + " at " + start);
+            }
+            line.position(end);
+            int column = palette.columnOf(line, start, end);
+            maxima[column] = Math.max(maxima[column], count);
+        }
+        return id;
     }
 
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    /**
+     * The colors seen so far, each with its own column. Red, green and blue always have the first three columns, so a
+     * game without blue has a minimum bag without blue just like before colors were generalised.
+     */
+    static final class Palette {
+        static final int MAX_COLORS = 32;
+
+        private final List<String> colors = new ArrayList<>(List.of("red", "green", "blue"));
+
+        int size() {
+            return colors.size();
+        }
+
+        String color(int column) {
+            return colors.get(column);
+        }
+
+        List<String> colors() {
+            return Collections.unmodifiableList(colors);
+        }
+
+        int columnOf(String color) {
+            return colors.indexOf(color);
+        }
+
+        private int columnOf(Line line, int start, int end) {
+            for (int column = 0; column < colors.size(); column++) {
+                String color = colors.get(column);
+                if (color.length() == end - start && line.regionMatches(start, color)) {
+                    return column;
+                }
+            }
+            if (colors.size() == MAX_COLORS) {
+                throw new IllegalStateException("more than " + MAX_COLORS + " colors");
+            }
+            colors.add(line.subSequence(start, end).toString());
+            return colors.size() - 1;
+        }
+    }
 
-    private static class Game {
-        private final int id;
-        private final List<CubeHolder> cubeSets;
+    /**
+     * All games as columns: the id of game {@code i} is {@code id[i]} and its highest count of the color in palette
+     * column {@code c} is {@code maxima[c][i]}.
+     */
+    static final class Games {
+        private final Palette palette;
+        private final int[] id;
+        private final int[][] maxima;
+        private final int size;
 
-        public Game(int id, List<CubeHolder> cubeSets) {
+        private Games(Palette palette, int[] id, int[][] maxima, int size) {
+            this.palette = palette;
             this.id = id;
-            this.cubeSets = cubeSets;
+            this.maxima = maxima;
+            this.size = size;
         }
 
-        public int getId() {
-            return id;
+        int size() {
+            return size;
         }
 
-        public boolean isPossibleWithBag(CubeHolder bag) {
-            return cubeSets.stream()
-                    .allMatch(t -> t.isSubsetOf(bag));
+        List<String> colors() {
+            return palette.colors();
+        }
+
+        private boolean fits(int game, int[] limits) {
+            for (int column = 0; column < maxima.length; column++) {
+                if (maxima[column][game] > limits[column]) {
+                    return false;
+                }
+            }
+            return true;
         }
 
-        public CubeHolder getMinimumBag() {
-            int redCubes = cubeSets.stream()
-                    .map(CubeHolder::getRedCubes)
-                    .max(Integer::compareTo)
-                    .orElse(0);
-            int greenCubes = cubeSets.stream()
-                    .map(CubeHolder::getGreenCubes)
-                    .max(Integer::compareTo)
-                    .orElse(0);
-            int blueCubes = cubeSets.stream()
-                    .map(CubeHolder::getBlueCubes)
-                    .max(Integer::compareTo)
-                    .orElse(0);
+        private static class Builder {
+            private final Palette palette = new Palette();
+            private final int[] gameMaxima = new int[Palette.MAX_COLORS];
+            private int[] id = new int[1024];
+            private int[][] maxima = new int[Palette.MAX_COLORS][];
+            private int size;
+
+            private void addLine(Line line) {
+                if (size == id.length) {
+                    id = Arrays.copyOf(id, size * 2);
+                    for (int column = 0; column < maxima.length && maxima[column] != null; column++) {
+                        maxima[column] = Arrays.copyOf(maxima[column], id.length);
+                    }
+                }
+                id[size] = parseGame(line, palette, gameMaxima);
+                for (int column = 0; column < palette.size(); column++) {
+                    if (maxima[column] == null) {
+                        maxima[column] = new int[id.length];
+                    }
+                    maxima[column][size] = gameMaxima[column];
+                }
+                size++;
+            }
 
-            return new CubeHolder(redCubes, greenCubes, blueCubes);
+            private Games build() {
+                // the columns are only read up to size, so they aren't copied to trim them
+                int[][] columns = new int[palette.size()][];
+                for (int column = 0; column < columns.length; column++) {
+                    columns[column] = maxima[column] == null ? new int[size] : maxima[column];
+                }
+                return new Games(palette, id, columns, size);
+            }
         }
     }
 
-    private static class CubeHolder {
-        private final int redCubes;
-        private final int greenCubes;
-        private final int blueCubes;
+    /**
+     * The games as points of their maxima in an implicit k-d tree, where every node keeps the bounding box and id sum
+     * of its subtree, to answer part 1 for many bags.
+     */
+    static final class BagIndex {
+        private final Palette palette;
+        private final int dimensions;
+        // per column, the maxima of the games in tree order
+        private final int[][] points;
+        private final int[] ids;
+        private final long[] subtreeIds;
+        private final int[][] boxMin;
+        private final int[][] boxMax;
 
-        public CubeHolder(int redCubes, int greenCubes, int blueCubes) {
-            this.redCubes = redCubes;
-            this.greenCubes = greenCubes;
-            this.blueCubes = blueCubes;
+        private BagIndex(Games games) {
+            this.palette = games.palette;
+            this.dimensions = games.maxima.length;
+            int size = games.size();
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            build(games, order, 0, size, 0);
+
+            this.points = new int[dimensions][size];
+            this.ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = games.id[order[i]];
+                for (int column = 0; column < dimensions; column++) {
+                    points[column][i] = games.maxima[column][order[i]];
+                }
+            }
+            this.subtreeIds = new long[size];
+            this.boxMin = new int[dimensions][size];
+            this.boxMax = new int[dimensions][size];
+            summarize(0, size);
+        }
+
+        static BagIndex of(Games games) {
+            return new BagIndex(games);
+        }
+
+        long sumOfPossibleIds(CubeHolder bag) {
+            int[] limits = bag.toColumns(palette);
+            return query(0, ids.length, limits);
         }
 
-        public int getRedCubes() {
-            return redCubes;
+        private long query(int from, int to, int[] limits) {
+            if (from >= to) {
+                return 0;
+            }
+            int node = (from + to) >>> 1;
+            boolean inside = true;
+            for (int column = 0; column < dimensions; column++) {
+                if (boxMin[column][node] > limits[column]) {
+                    return 0;
+                }
+                inside &= boxMax[column][node] <= limits[column];
+            }
+            if (inside) {
+                return subtreeIds[node];
+            }
+            long result = query(from, node, limits) + query(node + 1, to, limits);
+            for (int column = 0; column < dimensions; column++) {
+                if (points[column][node] > limits[column]) {
+                    return result;
+                }
+            }
+            return result + ids[node];
         }
 
-        public int getGreenCubes() {
-            return greenCubes;
+        /**
+         * Orders the games of the range so that its middle is the median on the color of this depth, then does the
+         * same for both halves.
+         */
+        private void build(Games games, int[] order, int from, int to, int depth) {
+            if (to - from <= 1) {
+                return;
+            }
+            int[] column = games.maxima[depth % dimensions];
+            int middle = (from + to) >>> 1;
+            select(order, column, from, to - 1, middle);
+            build(games, order, from, middle, depth + 1);
+            build(games, order, middle + 1, to, depth + 1);
         }
 
-        public int getBlueCubes() {
-            return blueCubes;
+        private static void select(int[] order, int[] column, int left, int right, int target) {
+            while (left < right) {
+                int pivot = column[order[(left + right) >>> 1]];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (column[order[i]] < pivot) i++;
+                    while (column[order[j]] > pivot) j--;
+                    if (i <= j) {
+                        int swap = order[i];
+                        order[i++] = order[j];
+                        order[j--] = swap;
+                    }
+                }
+                if (target <= j) {
+                    right = j;
+                } else if (target >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
         }
 
-        public static CubeHolder asCubeHolder(String representation) {
-            int red = 0;
-            int green = 0;
-            int blue = 0;
-            String[] colors = representation.split(",");
-            for (String color : colors) {
-                String trimmedColor = color.trim();
-                int count = Integer.parseInt(trimmedColor.substring(0, trimmedColor.indexOf(" ")));
-                if (trimmedColor.endsWith("red")) {
-                    red = count;
-                } else if (trimmedColor.endsWith("green")) {
-                    green = count;
-                } else if (trimmedColor.endsWith("blue")) {
-                    blue = count;
+        private void summarize(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int node = (from + to) >>> 1;
+            summarize(from, node);
+            summarize(node + 1, to);
+            long sum = ids[node];
+            if (from < node) {
+                sum += subtreeIds[(from + node) >>> 1];
+            }
+            if (node + 1 < to) {
+                sum += subtreeIds[(node + 1 + to) >>> 1];
+            }
+            subtreeIds[node] = sum;
+            for (int column = 0; column < dimensions; column++) {
+                int min = points[column][node];
+                int max = min;
+                if (from < node) {
+                    min = Math.min(min, boxMin[column][(from + node) >>> 1]);
+                    max = Math.max(max, boxMax[column][(from + node) >>> 1]);
+                }
+                if (node + 1 < to) {
+                    min = Math.min(min, boxMin[column][(node + 1 + to) >>> 1]);
+                    max = Math.max(max, boxMax[column][(node + 1 + to) >>> 1]);
                 }
+                boxMin[column][node] = min;
+                boxMax[column][node] = max;
             }
-            return new CubeHolder(red, green, blue);
+        }
+    }
+
+    /**
+     * Running sums of the ids of possible games and of the powers of the minimum bags, updated per pushed game.
+     */
+    static class Incremental implements IncrementalSolver {
+        private final CubeHolder bag;
+        private final Palette palette = new Palette();
+        private final int[] maxima = new int[Palette.MAX_COLORS];
+        private volatile long possibleGames;
+        private volatile long minimumCubes;
+
+        Incremental(CubeHolder bag) {
+            this.bag = bag;
+        }
+
+        @Override
+        public void accept(Line line) {
+            int id = parseGame(line, palette, maxima);
+            boolean possible = true;
+            long power = 1;
+            for (int column = 0; column < palette.size(); column++) {
+                possible &= maxima[column] <= bag.getCubes(palette.color(column));
+                power *= maxima[column];
+            }
+            if (possible) {
+                possibleGames += id;
+            }
+            minimumCubes += power;
+        }
+
+        @Override
+        public Object part1() {
+            return possibleGames;
         }
 
-        public boolean isSubsetOf(CubeHolder cubeHolder) {
-            return this.redCubes <= cubeHolder.getRedCubes()
-                    && this.greenCubes <= cubeHolder.getGreenCubes()
-                    && this.blueCubes <= cubeHolder.getBlueCubes();
+        @Override
+        public Object part2() {
+            return minimumCubes;
+        }
+    }
+
+    /**
+     * A number of cubes per color. Colors it doesn't mention have no cubes.
+     */
+    static class CubeHolder {
+        private final Map<String, Integer> cubes;
+
+        public CubeHolder(int redCubes, int greenCubes, int blueCubes) {
+            this(Map.of("red", redCubes, "green", greenCubes, "blue", blueCubes));
         }
 
-        public int getPower() {
-            return redCubes * greenCubes * blueCubes;
+        public CubeHolder(Map<String, Integer> cubes) {
+            this.cubes = Collections.unmodifiableMap(new LinkedHashMap<>(cubes));
+        }
+
+        public int getCubes(String color) {
+            return cubes.getOrDefault(color, 0);
+        }
+
+        private int[] toColumns(Palette palette) {
+            int[] result = new int[palette.size()];
+            for (int column = 0; column < result.length; column++) {
+                result[column] = getCubes(palette.color(column));
+            }
+            return result;
         }
     }
 }
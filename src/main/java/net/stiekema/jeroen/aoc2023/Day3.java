@@ -1,243 +1,487 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
-
-public class Day3 {
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+public class Day3 implements Solver<Day3.Engine> {
     private static final boolean DEBUG = false;
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("part 1 test: " + calculatePart1Test());
-        System.out.println("part 1 537832?: " + calculatePart1());
-        System.out.println("part 2 test: " + calculatePart2Test());
-        System.out.println("part 2: " + calculatePart2());
+    public static void main(String[] args) {
+        Engine testEngine = buildEngine(Input.of("/day3-1-test.txt"));
+        Engine engine = buildEngine(Input.of("/day3.txt"));
+        System.out.println("part 1 test: " + calculate(testEngine));
+        System.out.println("part 1 537832?: " + calculate(engine));
+        System.out.println("part 2 test: " + calculateGearRatio(testEngine));
+        System.out.println("part 2: " + calculateGearRatio(engine));
     }
 
-    private static int calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day3-1-test.txt");
-        return calculate(resource);
+    @Override
+    public int day() {
+        return 3;
     }
 
-    private static int calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day3.txt");
-        return calculate(resource);
+    @Override
+    public Engine parse(Input input) {
+        return buildEngine(input);
     }
 
-    private static int calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day3-1-test.txt");
-        return calculateGearRatio(resource);
+    @Override
+    public Object part1(Engine model) {
+        return calculate(model);
     }
 
-    private static int calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day2.class.getResource("/day3.txt");
-        return calculateGearRatio(resource);
+    @Override
+    public Object part2(Engine model) {
+        return calculateGearRatio(model);
     }
 
-    private static int calculate(URL resource) throws URISyntaxException, IOException {
-        Engine engine = buildEngine(resource);
-        List<Integer> enginePartNrs = engine.findEnginePartNrs();
-        if (DEBUG) System.out.println(enginePartNrs);
-        return enginePartNrs.stream().reduce(Integer::sum).orElse(0);
+    @Override
+    public IncrementalSolver incremental() {
+        return new Incremental(partNr -> {}, gearRatio -> {});
     }
 
-    private static int calculateGearRatio(URL resource) throws URISyntaxException, IOException {
-        Engine engine = buildEngine(resource);
-        List<Integer> gearRatios = engine.findGearRatios();
-        if (DEBUG) System.out.println(gearRatios);
-        return gearRatios.stream().reduce(Integer::sum).orElse(0);
+    static long calculate(Engine engine) {
+        return engine.parts().partNrSum();
     }
 
-    private static Engine buildEngine(URL resource) throws URISyntaxException, IOException {
-        Engine.Builder engineBuilder = new Engine.Builder();
-        getLines(resource).forEach(engineBuilder::addLine);
-        return engineBuilder.build();
+    static long calculateGearRatio(Engine engine) {
+        return engine.parts().gearRatioSum();
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    static Engine buildEngine(Input input) {
+        return new Engine(Grid.parse(input, 1, (byte) '.'));
     }
 
+    /**
+     * The schematic with two bitmaps of {@code words} longs per row: the cells next to a symbol, and the stars.
+     */
     public static class Engine {
-
-        private static final List<Character> SYMBOLS = IntStream.range(0, 255)
-                .mapToObj(t -> (char) t)
-                .filter(t -> t != '.')
-                .filter(t -> t < '0' || t > '9')
-                .toList();
-
-        // representation[0] = first line, representation[0][5] = first line, 6th character
-        private final char[][] representation;
-
-        private Engine(char[][] representation) {
-            this.representation = representation;
+        private static final int BAND_ROWS = 256;
+
+        // padded with one '.' on every side, so every number ends at a non-digit inside its row
+        private final Grid grid;
+        private final int words;
+        private final long[] nearSymbol;
+        private final long[] stars;
+        // number of stars before every word of stars, to size the gear map of a band
+        private final int[] starRank;
+        private final int starCount;
+        // the scan shared by both parts, racing threads just scan twice
+        private volatile Parts parts;
+
+        private Engine(Grid grid) {
+            this.grid = grid;
+            this.words = (grid.width() + 63) >>> 6;
+            int height = grid.height();
+            long[] symbols = new long[height * words];
+            this.stars = new long[height * words];
+            for (int y = 0; y < height; y++) {
+                int rowStart = grid.index(0, y);
+                for (int x = 0; x < grid.width(); x++) {
+                    byte b = grid.get(rowStart + x);
+                    if (isSymbol(b)) {
+                        symbols[y * words + (x >>> 6)] |= 1L << x;
+                    }
+                    if (b == '*') {
+                        stars[y * words + (x >>> 6)] |= 1L << x;
+                    }
+                }
+            }
+            // spread every symbol to its left and right neighbour, then to the rows above and below
+            for (int y = 0; y < height; y++) {
+                long previous = 0;
+                for (int w = y * words; w < (y + 1) * words; w++) {
+                    long current = symbols[w];
+                    long next = w + 1 < (y + 1) * words ? symbols[w + 1] : 0;
+                    symbols[w] = current | current << 1 | previous >>> 63 | current >>> 1 | next << 63;
+                    previous = current;
+                }
+            }
+            this.nearSymbol = new long[height * words];
+            for (int i = 0; i < nearSymbol.length; i++) {
+                nearSymbol[i] = symbols[i]
+                        | (i >= words ? symbols[i - words] : 0)
+                        | (i + words < symbols.length ? symbols[i + words] : 0);
+            }
+            this.starRank = new int[stars.length];
+            int rank = 0;
+            for (int w = 0; w < stars.length; w++) {
+                starRank[w] = rank;
+                rank += Long.bitCount(stars[w]);
+            }
+            this.starCount = rank;
+            if (DEBUG) System.out.println(grid);
         }
 
-        public List<Integer> findEnginePartNrs() {
-            List<Integer> result = new ArrayList<>();
-            for (int lineNr = 0; lineNr < representation.length; lineNr++) {
-                String line = new String(representation[lineNr]);
-                result.addAll(findEnginePartNrs(line, lineNr));
+        /**
+         * The result of {@link #scan()}, scanned on first use.
+         */
+        public Parts parts() {
+            Parts result = parts;
+            if (result == null) {
+                result = scan();
+                parts = result;
             }
             return result;
         }
 
-        public List<Integer> findGearRatios() {
-            Map<Coordinate, Gear> possibleGears = new HashMap<>();
-            for (int y = 0; y < representation.length; y++) {
-                String line = new String(representation[y]);
-                Pattern pattern = Pattern.compile("[0-9]+");
-                Matcher matcher = pattern.matcher(line);
-                while (matcher.find()) {
-                    String match = matcher.group();
-                    int startIndex = matcher.start();
-                    int endIndex = matcher.end() - 1;
-                    Set<Coordinate> foundGears = findAdjacentToSymbolCoordinates(new Coordinate(startIndex, y), new Coordinate(endIndex, y), List.of('*'));
-                    foundGears.forEach(t -> {
-                                Gear gear = possibleGears.getOrDefault(t, new Gear(t));
-                                gear.addPartNr(Integer.parseInt(match));
-                                possibleGears.put(t, gear);
-                            });
+        /**
+         * Reads every number once. Tall schematics are split into bands of rows scanned on the fork-join pool of the
+         * calling thread, or the common pool.
+         */
+        public Parts scan() {
+            Band band = grid.height() < 2 * BAND_ROWS
+                    ? scanBand(0, grid.height())
+                    : new BandTask(0, grid.height()).invoke();
+            return new Parts(band.partNrSum(), band.gearRatioSum());
+        }
+
+        /**
+         * Scans rows {@code fromY} to {@code toY}. Stars that numbers of the bands next to it can touch are returned
+         * unsettled.
+         */
+        private Band scanBand(int fromY, int toY) {
+            int haloFrom = Math.max(fromY - 1, 0);
+            int haloTo = Math.min(toY + 1, grid.height());
+            int expectedStars = (haloTo == grid.height() ? starCount : starRank[haloTo * words]) - starRank[haloFrom * words];
+            GearMap gears = new GearMap(expectedStars);
+            long partNrSum = 0;
+            for (int y = fromY; y < toY; y++) {
+                int rowStart = grid.index(0, y);
+                int x = 0;
+                while (x < grid.width()) {
+                    if (!isDigit(grid.get(rowStart + x))) {
+                        x++;
+                        continue;
+                    }
+                    int startX = x;
+                    int partNr = 0;
+                    while (isDigit(grid.get(rowStart + x))) {
+                        partNr = partNr * 10 + grid.get(rowStart + x++) - '0';
+                    }
+                    if (anyInRange(nearSymbol, y, startX, x - 1)) {
+                        partNrSum += partNr;
+                    }
+                    // the bitmaps have no halo, so the box around the number is clipped to the schematic
+                    int fromX = Math.max(startX - 1, 0);
+                    int toX = Math.min(x, grid.width() - 1);
+                    for (int row = Math.max(y - 1, 0); row <= Math.min(y + 1, grid.height() - 1); row++) {
+                        for (int w = row * words + (fromX >>> 6); w <= row * words + (toX >>> 6); w++) {
+                            long bits = stars[w] & rangeMask(w - row * words, fromX, toX);
+                            while (bits != 0) {
+                                int starX = ((w - row * words) << 6) + Long.numberOfTrailingZeros(bits);
+                                gears.add((long) row * grid.width() + starX, 1, partNr);
+                                bits &= bits - 1;
+                            }
+                        }
+                    }
                 }
             }
-
-            return possibleGears.values().stream()
-                    .filter(Gear::isValidGear)
-                    .map(Gear::getGearRatio)
-                    .toList();
+            return settle(partNrSum, 0, gears, fromY, toY);
         }
 
-        private List<Integer> findEnginePartNrs(String line, int lineNr) {
-            List<Integer> result = new ArrayList<>();
-            Pattern pattern = Pattern.compile("[0-9]+");
-            Matcher matcher = pattern.matcher(line);
-            while (matcher.find()) {
-                String match = matcher.group();
-                int startIndex = matcher.start();
-                int endIndex = matcher.end() - 1;
-                if (!findAdjacentToSymbolCoordinates(new Coordinate(startIndex, lineNr), new Coordinate(endIndex, lineNr), SYMBOLS).isEmpty()) {
-                    result.add(Integer.parseInt(match));
+        /**
+         * Adds the ratios of the stars of {@code gears} that no number outside rows {@code fromY} to {@code toY} can
+         * touch to {@code gearRatioSum}, and keeps the others for the bands around it.
+         */
+        private Band settle(long partNrSum, long gearRatioSum, GearMap gears, int fromY, int toY) {
+            GearMap shared = new GearMap(0);
+            for (int slot = 0; slot < gears.capacity(); slot++) {
+                if (gears.count(slot) == 0) {
+                    continue;
+                }
+                long row = gears.key(slot) / grid.width();
+                if ((fromY > 0 && row <= fromY) || (toY < grid.height() && row >= toY - 1)) {
+                    shared.add(gears.key(slot), gears.count(slot), gears.ratio(slot));
+                } else if (gears.count(slot) == 2) {
+                    gearRatioSum += gears.ratio(slot);
                 }
             }
-            return result;
+            return new Band(partNrSum, gearRatioSum, shared);
         }
 
-        private Set<Coordinate> findAdjacentToSymbolCoordinates(Coordinate start, Coordinate end, List<Character> symbols) {
-            Set<Coordinate> result = new HashSet<>();
-            for (int x = start.x; x <= end.x; x++) {
-                result.addAll(findAdjacentToSymbolCoordinates(new Coordinate(x, start.y), symbols));
-            }
-            return result;
+        private record Band(long partNrSum, long gearRatioSum, GearMap sharedGears) {
         }
 
-        private Set<Coordinate> findAdjacentToSymbolCoordinates(Coordinate coordinate, List<Character> symbols) {
-            Set<Coordinate> result = new HashSet<>();
-            for (int x = coordinate.x - 1; x <= coordinate.x + 1; x++) {
-                for (int y = coordinate.y - 1; y <= coordinate.y + 1; y++) {
-                    char character = representation[y][x];
-                    if (symbols.contains(character)) {
-                        result.add(new Coordinate(x, y));
+        private class BandTask extends RecursiveTask<Band> {
+            private final int fromY;
+            private final int toY;
+
+            BandTask(int fromY, int toY) {
+                this.fromY = fromY;
+                this.toY = toY;
+            }
+
+            @Override
+            protected Band compute() {
+                if (toY - fromY <= BAND_ROWS) {
+                    return scanBand(fromY, toY);
+                }
+                int middle = (fromY + toY) >>> 1;
+                BandTask upper = new BandTask(fromY, middle);
+                upper.fork();
+                Band lower = new BandTask(middle, toY).compute();
+                Band band = upper.join();
+                GearMap gears = band.sharedGears();
+                GearMap other = lower.sharedGears();
+                for (int slot = 0; slot < other.capacity(); slot++) {
+                    if (other.count(slot) != 0) {
+                        gears.add(other.key(slot), other.count(slot), other.ratio(slot));
                     }
                 }
+                return settle(band.partNrSum() + lower.partNrSum(), band.gearRatioSum() + lower.gearRatioSum(),
+                        gears, fromY, toY);
             }
-            return result;
         }
 
-        private static class Builder {
-            private final LinkedList<String> lines = new LinkedList<>();
+        private boolean anyInRange(long[] bitmap, int y, int fromX, int toX) {
+            for (int w = fromX >>> 6; w <= toX >>> 6; w++) {
+                if ((bitmap[y * words + w] & rangeMask(w, fromX, toX)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-            private void addLine(String line) {
-                lines.add(line);
+        /**
+         * The bits of word {@code w} of a row that lie between {@code fromX} and {@code toX}, inclusive.
+         */
+        private static long rangeMask(int w, int fromX, int toX) {
+            long mask = -1L;
+            if (w == fromX >>> 6) {
+                mask &= -1L << fromX;
+            }
+            if (w == toX >>> 6) {
+                mask &= -1L >>> (63 - (toX & 63));
             }
+            return mask;
+        }
 
-            private Engine build() {
-                int lineLength = lines.isEmpty() ? 0 : lines.peek().length();
-                char[][] representation = new char[lineLength + 2][lines.size() + 2];
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
 
-                int y = 0;
-                Arrays.fill(representation[y++], '.');
-                for (String line : lines) {
-                    int x = 0;
-                    representation[y][x++] = '.';
-                    for (char c : line.toCharArray()) {
-                        representation[y][x++] = c;
-                    }
-                    representation[y][x] = '.';
-                    y++;
-                }
-                Arrays.fill(representation[y], '.');
-                if (DEBUG) Arrays.stream(representation).forEach(System.out::println);
-                return new Engine(representation);
-            }
+        private static boolean isSymbol(byte b) {
+            return b != '.' && !isDigit(b);
         }
 
         @Override
         public String toString() {
-            StringBuilder sb = new StringBuilder();
-            for (char[] line : representation) {
-                sb.append(line);
-                sb.append('\n');
-            }
-            return sb.toString();
+            return grid.toString();
         }
     }
 
-    public record Coordinate (int x, int y) {
+    public record Parts(long partNrSum, long gearRatioSum) {
     }
 
-    public static class Gear {
-        private final Coordinate coordinate;
-        private final List<Integer> partNumbers = new ArrayList<>();
+    /**
+     * Open addressing map from the position of a star, {@code y * width + x}, to the number of part numbers around it
+     * and their product.
+     */
+    static final class GearMap {
+        private long[] keys;
+        private int[] counts;
+        private long[] ratios;
+        private int size;
+
+        GearMap(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            ratios = new long[capacity];
+        }
+
+        /**
+         * Adds {@code count} part numbers with product {@code ratio} to the star at {@code key}.
+         */
+        void add(long key, int count, long ratio) {
+            int slot = slot(key);
+            if (counts[slot] != 0) {
+                counts[slot] += count;
+                ratios[slot] *= ratio;
+                return;
+            }
+            keys[slot] = key;
+            counts[slot] = count;
+            ratios[slot] = ratio;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
 
-        public Gear(Coordinate coordinate) {
-            this.coordinate = coordinate;
+        int capacity() {
+            return keys.length;
         }
 
-        public void addPartNr(Integer partNr) {
-            this.partNumbers.add(partNr);
+        /**
+         * Number of part numbers of the star in {@code slot}, 0 for an empty slot.
+         */
+        int count(int slot) {
+            return counts[slot];
         }
 
-        public boolean isValidGear() {
-            return partNumbers.size() == 2;
+        long key(int slot) {
+            return keys[slot];
         }
 
-        public int getGearRatio() {
-            if (partNumbers.size() != 2) {
-                throw new IllegalStateException("not a valid gear");
+        long ratio(int slot) {
+            return ratios[slot];
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            // the top log2(capacity) bits of the product; a shift of 64 is a shift of 0, which the mask still covers
+            int shift = Long.SIZE - Integer.numberOfTrailingZeros(keys.length);
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
             }
+            return slot;
+        }
 
-            return partNumbers.get(0) * partNumbers.get(1);
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            long[] oldRatios = ratios;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            ratios = new long[oldKeys.length * 2];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldCounts[slot] != 0) {
+                    int newSlot = slot(oldKeys[slot]);
+                    keys[newSlot] = oldKeys[slot];
+                    counts[newSlot] = oldCounts[slot];
+                    ratios[newSlot] = oldRatios[slot];
+                }
+            }
+        }
+    }
+
+    /**
+     * The schematic as a stream of rows, keeping only the last three. A row is settled when the row below it arrives,
+     * the last one by {@link #finish()}.
+     */
+    static class Incremental implements IncrementalSolver {
+        private final IntConsumer partNrs;
+        private final LongConsumer gearRatios;
+        // row y in slot y % 3, padded with a '.' on both ends
+        private final byte[][] rows = new byte[3][];
+        private final int[][] gearPartCount = new int[3][];
+        private final long[][] gearRatio = new long[3][];
+        private int width = -1;
+        private int height;
+        private boolean finished;
+        private volatile long partNrSum;
+        private volatile long gearRatioSum;
+
+        Incremental(IntConsumer partNrs, LongConsumer gearRatios) {
+            this.partNrs = partNrs;
+            this.gearRatios = gearRatios;
         }
 
         @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Gear gear = (Gear) o;
-            return Objects.equals(coordinate, gear.coordinate);
+        public void accept(Line line) {
+            if (finished) {
+                throw new IllegalStateException("already finished");
+            }
+            if (width < 0) {
+                width = line.length();
+                for (int slot = 0; slot < 3; slot++) {
+                    rows[slot] = new byte[width + 2];
+                    gearPartCount[slot] = new int[width + 2];
+                    gearRatio[slot] = new long[width + 2];
+                }
+            } else if (line.length() != width) {
+                throw new IllegalArgumentException("line " + line.lineNr() + " has length " + line.length() + ", expected " + width);
+            }
+            int slot = height % 3;
+            byte[] row = rows[slot];
+            row[0] = '.';
+            row[width + 1] = '.';
+            for (int x = 0; x < width; x++) {
+                row[x + 1] = line.byteAt(x);
+            }
+            Arrays.fill(gearPartCount[slot], 0);
+            height++;
+            if (height >= 2) {
+                settle(height - 2, true);
+            }
         }
 
         @Override
-        public int hashCode() {
-            return Objects.hash(coordinate);
+        public void finish() {
+            if (!finished && height > 0) {
+                settle(height - 1, false);
+                settleGears(height - 1);
+            }
+            finished = true;
         }
-    }
 
+        /**
+         * Settles the numbers on row {@code y}, and with that the stars on the row above it.
+         */
+        private void settle(int y, boolean hasRowBelow) {
+            byte[] row = rows[y % 3];
+            int fromRow = Math.max(y - 1, 0);
+            int toRow = hasRowBelow ? y + 1 : y;
+            long partNrSum = this.partNrSum;
+            int x = 1;
+            while (x <= width) {
+                if (!Engine.isDigit(row[x])) {
+                    x++;
+                    continue;
+                }
+                int startX = x;
+                int partNr = 0;
+                while (x <= width && Engine.isDigit(row[x])) {
+                    partNr = partNr * 10 + row[x++] - '0';
+                }
+                boolean isPartNr = false;
+                for (int r = fromRow; r <= toRow; r++) {
+                    byte[] neighbours = rows[r % 3];
+                    int[] count = gearPartCount[r % 3];
+                    long[] ratio = gearRatio[r % 3];
+                    for (int nx = startX - 1; nx <= x; nx++) {
+                        isPartNr |= Engine.isSymbol(neighbours[nx]);
+                        if (neighbours[nx] == '*') {
+                            ratio[nx] = count[nx]++ == 0 ? partNr : ratio[nx] * partNr;
+                        }
+                    }
+                }
+                if (isPartNr) {
+                    partNrSum += partNr;
+                    partNrs.accept(partNr);
+                }
+            }
+            this.partNrSum = partNrSum;
+            if (y > 0) {
+                settleGears(y - 1);
+            }
+        }
 
+        private void settleGears(int y) {
+            int[] count = gearPartCount[y % 3];
+            long[] ratio = gearRatio[y % 3];
+            long gearRatioSum = this.gearRatioSum;
+            for (int x = 1; x <= width; x++) {
+                if (count[x] == 2) {
+                    gearRatioSum += ratio[x];
+                    gearRatios.accept(ratio[x]);
+                }
+            }
+            this.gearRatioSum = gearRatioSum;
+        }
+
+        @Override
+        public Object part1() {
+            return partNrSum;
+        }
+
+        @Override
+        public Object part2() {
+            return gearRatioSum;
+        }
+    }
 }
@@ -1,109 +1,180 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-public class Day4 {
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("part 1 test: " + calculatePart1Test());
-        System.out.println("part 1: " + calculatePart1());
-        System.out.println("part 2 test: " + calculatePart2Test());
-        System.out.println("part 2: " + calculatePart2());
+
+public class Day4 implements Solver<List<Day4.Card>> {
+    public static void main(String[] args) {
+        List<Card> testCards = parseCards(Input.of("/day4-1-test.txt"));
+        List<Card> cards = parseCards(Input.of("/day4.txt"));
+        System.out.println("part 1 test: " + calculateTotalScore(testCards));
+        System.out.println("part 1: " + calculateTotalScore(cards));
+        System.out.println("part 2 test: " + calculateTotalNrOfCards(testCards));
+        System.out.println("part 2: " + calculateTotalNrOfCards(cards));
+    }
+
+    @Override
+    public int day() {
+        return 4;
     }
 
-    private static long calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day4-1-test.txt");
-        return calculateTotalScore(resource);
+    @Override
+    public List<Card> parse(Input input) {
+        return parseCards(input);
     }
 
-    private static long calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day4.txt");
-        return calculateTotalScore(resource);
+    @Override
+    public Object part1(List<Card> model) {
+        return calculateTotalScore(model);
     }
 
-    private static long calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day4-1-test.txt");
-        return calculateTotalNrOfCards(resource);
+    @Override
+    public Object part2(List<Card> model) {
+        return calculateTotalNrOfCards(model);
     }
 
-    private static long calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day4.txt");
-        return calculateTotalNrOfCards(resource);
+    @Override
+    public IncrementalSolver incremental() {
+        return new Incremental();
     }
 
-    private static long calculateTotalScore(URL resource) throws URISyntaxException, IOException {
-        return getLines(resource)
-                .map(Day4::convertToCard)
-                .map(Card::calculateScore)
-                .reduce(Long::sum)
-                .orElse(0L);
+    static List<Card> parseCards(Input input) {
+        List<Card> cards = new ArrayList<>();
+        input.forEachLine(line -> cards.add(convertToCard(line)));
+        return Collections.unmodifiableList(cards);
     }
 
-    private static long calculateTotalNrOfCards(URL resource) throws URISyntaxException, IOException {
-        List<Card> cards = getLines(resource)
-                .map(Day4::convertToCard)
-                .collect(Collectors.toList());
+    static long calculateTotalScore(List<Card> cards) {
+        long totalScore = 0;
+        for (Card card : cards) {
+            totalScore = Math.addExact(totalScore, card.calculateScore());
+        }
+        return totalScore;
+    }
 
+    static long calculateTotalNrOfCards(List<Card> cards) {
         long totalCards = 0;
-        for (int cardId = 0; cardId < cards.size(); cardId++) {
-            totalCards += calculateTotalNrOfCards(cardId, cards);
+        for (long copies : calculateCopies(cards)) {
+            totalCards += copies;
         }
         return totalCards;
     }
 
-    private static long calculateTotalNrOfCards(int cardId, List<Card> cards) {
-        long winningNumbers = cards.get(cardId).calculateWinningNumbers();
-        long result = 1;
-        for (int i = 1; i <= winningNumbers; i++) {
-            result += calculateTotalNrOfCards(cardId + i, cards);
+    /**
+     * The number of copies of every card, the original included, in one forward pass.
+     */
+    static long[] calculateCopies(List<Card> cards) {
+        long[] copies = new long[cards.size()];
+        Arrays.fill(copies, 1);
+        for (int cardId = 0; cardId < copies.length; cardId++) {
+            int lastWon = (int) Math.min(cardId + cards.get(cardId).calculateWinningNumbers(), copies.length - 1);
+            for (int i = cardId + 1; i <= lastWon; i++) {
+                copies[i] += copies[cardId];
+            }
         }
-        return result;
+        return copies;
     }
 
-    private static Card convertToCard(String line) {
-        Pattern pattern = Pattern.compile("^Card\\s+([0-9]+):(.*?)\\|(.*?)$");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String numbers = matcher.group(2);
-            String winningNumbers = matcher.group(3);
-            return new Card(
-                    Arrays.stream(numbers.trim().split("\\s+"))
-                            .map(Integer::parseInt)
-                            .collect(Collectors.toList()),
-                    Arrays.stream(winningNumbers.trim().split("\\s+"))
-                            .map(Integer::parseInt)
-                            .collect(Collectors.toList())
-            );
-        } else {
+    private static Card convertToCard(Line line) {
+        int separator = line.indexOf('|');
+        if (!line.startsWith("Card") || separator < 0) {
             throw new RuntimeException("can't convert line to card: " + line);
         }
+        line.skipPast(':');
+        long numbersLow = 0;
+        long numbersHigh = 0;
+        while (line.skipWhitespace().position() < separator) {
+            int number = nextCardNumber(line);
+            numbersLow |= number < 64 ? 1L << number : 0;
+            numbersHigh |= number >= 64 ? 1L << number : 0;
+        }
+        line.skipPast('|');
+        long winningLow = 0;
+        long winningHigh = 0;
+        while (line.hasNextNumber()) {
+            int number = nextCardNumber(line);
+            winningLow |= number < 64 ? 1L << number : 0;
+            winningHigh |= number >= 64 ? 1L << number : 0;
+        }
+        return new Card(numbersLow, numbersHigh, winningLow, winningHigh);
+    }
+
+    private static int nextCardNumber(Line line) {
+        int number = line.nextInt();
+        if (number < 0 || number > Card.MAX_NUMBER) {
+            throw new RuntimeException("card number " + number + " out of range in line " + line.lineNr());
+        }
+        return number;
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    /**
+     * Running score and number of cards, with the copies still to be handed out in a ring of pending counts.
+     */
+    static class Incremental implements IncrementalSolver {
+        private long[] pendingCopies = new long[16];
+        private int cardNr;
+        private volatile long totalScore;
+        private volatile long totalNrOfCards;
+
+        @Override
+        public void accept(Line line) {
+            Card card = convertToCard(line);
+            int matches = (int) card.calculateWinningNumbers();
+            if (matches >= pendingCopies.length) {
+                grow(matches + 1);
+            }
+            int mask = pendingCopies.length - 1;
+            long copies = 1 + pendingCopies[cardNr & mask];
+            pendingCopies[cardNr & mask] = 0;
+            for (int i = 1; i <= matches; i++) {
+                pendingCopies[(cardNr + i) & mask] += copies;
+            }
+            cardNr++;
+            totalScore = Math.addExact(totalScore, card.calculateScore());
+            totalNrOfCards += copies;
+        }
+
+        private void grow(int minimumLength) {
+            long[] grown = new long[Integer.highestOneBit(minimumLength) * 2];
+            for (int i = 0; i < pendingCopies.length; i++) {
+                int nr = cardNr + i;
+                grown[nr & (grown.length - 1)] = pendingCopies[nr & (pendingCopies.length - 1)];
+            }
+            pendingCopies = grown;
+        }
+
+        @Override
+        public Object part1() {
+            return totalScore;
+        }
+
+        @Override
+        public Object part2() {
+            return totalNrOfCards;
+        }
     }
 
-    public record Card (List<Integer> numbers, List<Integer> winningNumbers) {
+    /**
+     * Both sides of a card as a bitset of the numbers 0 to 127 in two longs, so the matches are two bit counts.
+     */
+    public record Card (long numbersLow, long numbersHigh, long winningLow, long winningHigh) {
+        static final int MAX_NUMBER = 127;
 
         public long calculateWinningNumbers() {
-            return numbers.stream()
-                    .filter(winningNumbers::contains)
-                    .count();
+            return Long.bitCount(numbersLow & winningLow) + Long.bitCount(numbersHigh & winningHigh);
         }
 
+        /**
+         * Fails with an {@link ArithmeticException} from 64 matches on, as the score no longer fits in a long.
+         */
         public long calculateScore() {
             long nrOfWinningNumbers = calculateWinningNumbers();
-            return nrOfWinningNumbers > 0 ? (long) Math.pow(2, (nrOfWinningNumbers - 1)) : 0;
+            if (nrOfWinningNumbers >= Long.SIZE) {
+                throw new ArithmeticException("score of " + nrOfWinningNumbers + " matches overflows a long");
+            }
+            return nrOfWinningNumbers > 0 ? 1L << (nrOfWinningNumbers - 1) : 0;
         }
     }
 }
@@ -1,174 +1,1078 @@
 package net.stiekema.jeroen.aoc2023;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Consumer;
 
-public class Day5 {
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("part 1 test 35?: " + calculatePart1Test());
-        System.out.println("part 1 318728750?: " + calculatePart1());
-        System.out.println("part 2 test 46?: " + calculatePart2Test());
-        System.out.println("part 2 37384986?: " + calculatePart2());
+public class Day5 implements Solver<Day5.Almanac> {
+    public static void main(String[] args) {
+        Almanac testAlmanac = parseAlmanac(Input.of("/day5-test.txt"));
+        Almanac almanac = parseAlmanac(Input.of("/day5.txt"));
+        System.out.println("part 1 test 35?: " + calculateLowestLocationNrComposed(testAlmanac, seedsPart1(testAlmanac)));
+        System.out.println("part 1 318728750?: " + calculateLowestLocationNrComposed(almanac, seedsPart1(almanac)));
+        System.out.println("part 2 test 46?: " + calculateLowestLocationNrComposed(testAlmanac, seedsPart2(testAlmanac)));
+        System.out.println("part 2 37384986?: " + calculateLowestLocationNrComposed(almanac, seedsPart2(almanac)));
+        if (args.length > 0 && args[0].equals("--brute-force")) {
+            // Day5 --brute-force [checkpoint file]: checks part 2 seed by seed, an interrupted run resumes
+            Path checkpoint = args.length > 1 ? Paths.get(args[1]) : null;
+            BruteForce bruteForce = new BruteForce(10_000_000, checkpoint, Duration.ofSeconds(10), System.out::println);
+            System.out.println("part 2 brute force 37384986?: " + bruteForce.run(almanac, seedsPart2(almanac)));
+        }
+    }
+
+    @Override
+    public int day() {
+        return 5;
     }
 
-    private static long calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day5-test.txt");
-        return calculate(resource, seedResolverPart1());
+    @Override
+    public Almanac parse(Input input) {
+        return parseAlmanac(input);
     }
 
-    private static long calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day5.txt");
-        return calculate(resource, seedResolverPart1());
+    @Override
+    public Object part1(Almanac model) {
+        return calculateLowestLocationNrChosen(model, seedsPart1(model));
     }
 
-    private static long calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day5-test.txt");
-        return calculate(resource, seedResolverPart2());
+    @Override
+    public Object part2(Almanac model) {
+        return calculateLowestLocationNrChosen(model, seedsPart2(model));
     }
 
-    private static long calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day5.txt");
-        return calculate(resource, seedResolverPart2());
+    @Override
+    public ModelCodec<Almanac> codec() {
+        return new AlmanacCodec();
     }
 
-    private static long calculate(URL resource, Function<String, List<SeedEntry>> seedResolver) throws URISyntaxException, IOException {
-        return calculateLowestLocationNr(resource, seedResolver);
+    /**
+     * Searches from the locations back to the seeds when that is estimated to take fewer steps than looking up the seed
+     * ranges in the composed function, which costs a binary search per range plus the pieces they cover.
+     */
+    static long calculateLowestLocationNrChosen(Almanac almanac, List<SeedEntry> seeds) {
+        int pieces = almanac.seedToLocation.size();
+        long forwardCost = (long) seeds.size() * (64 - Long.numberOfLeadingZeros(pieces)) + pieces;
+        return ReverseSearch.estimatedCost(almanac, seeds) < forwardCost
+                ? new ReverseSearch(almanac, seeds).search()
+                : calculateLowestLocationNrComposed(almanac, seeds);
     }
 
-    private static Long calculateLowestLocationNr(URL resource, Function<String, List<SeedEntry>> seedResolver) throws URISyntaxException, IOException {
-        Almanac almanac = parseAlmanac(resource, seedResolver);
+    /**
+     * Looks the seed ranges up in the seed-to-location function the almanac composed from its maps when it was built.
+     */
+    static long calculateLowestLocationNrComposed(Almanac almanac, List<SeedEntry> seeds) {
+        Instrumentation.count(MetricsSink.Counter.LOOKUPS, seeds.size());
+        long lowestLocationNr = Long.MAX_VALUE;
+        for (SeedEntry seedEntry : seeds) {
+            if (seedEntry.length() > 0) {
+                lowestLocationNr = Math.min(lowestLocationNr,
+                        almanac.seedToLocation.lowestDestination(seedEntry.source(), seedEntry.source() + seedEntry.length()));
+            }
+        }
+        return lowestLocationNr;
+    }
+
+    /**
+     * Pushes the seed ranges through the maps as ranges, splitting a range wherever it crosses the edge of a map
+     * entry, so the work grows with the number of ranges rather than the number of seeds.
+     */
+    static long calculateLowestLocationNrOfRanges(Almanac almanac, List<SeedEntry> seeds) {
+        List<SeedEntry> ranges = seeds;
+        for (AlmanacMap map : almanac.maps()) {
+            Instrumentation.count(MetricsSink.Counter.LOOKUPS, ranges.size());
+            ranges = map.getDestinations(ranges);
+        }
+        long lowestLocationNr = Long.MAX_VALUE;
+        for (SeedEntry range : ranges) {
+            if (range.length() > 0) {
+                lowestLocationNr = Math.min(lowestLocationNr, range.source());
+            }
+        }
+        return lowestLocationNr;
+    }
 
+    /**
+     * Looks up every single seed, the slow but obvious way that the range engine can be checked against.
+     */
+    static long calculateLowestLocationNr(Almanac almanac, List<SeedEntry> seeds) {
+        FrozenAlmanacMap[] maps = almanac.frozenMaps();
         long lowestLocationNr = Long.MAX_VALUE;
-        for (SeedEntry seedEntry : almanac.seeds) {
-            System.out.println("calculating lowest location or for seed " + seedEntry);
-            for (long seedNr = seedEntry.source; seedNr < seedEntry.source + seedEntry.length; seedNr++) {
-                long calculatedLocationNr = Optional.of(seedNr)
-                        .map(t -> almanac.seedToSoilMap.getDestination(t))
-                        .map(t -> almanac.soilToFertilizerMap.getDestination(t))
-                        .map(t -> almanac.fertilizerToWaterMap.getDestination(t))
-                        .map(t -> almanac.waterToLightMap.getDestination(t))
-                        .map(t -> almanac.lightToTemperatureMap.getDestination(t))
-                        .map(t -> almanac.temperatureToHumidityMap.getDestination(t))
-                        .map(t -> almanac.humidityToLocationMap.getDestination(t))
-                        .orElseThrow();
-                lowestLocationNr = Math.min(lowestLocationNr, calculatedLocationNr);
-            }
-            System.out.println("lowest locationNr: " +lowestLocationNr);
+        for (SeedEntry seedEntry : seeds) {
+            Instrumentation.BatchEvent batch = Instrumentation.beginBatch("seed range");
+            lowestLocationNr = Math.min(lowestLocationNr,
+                    lowestLocationNr(maps, seedEntry.source, seedEntry.source + seedEntry.length));
+            Instrumentation.endBatch(batch, seedEntry.length);
+            Instrumentation.count(MetricsSink.Counter.LOOKUPS, maps.length * seedEntry.length);
         }
 
         return lowestLocationNr;
     }
 
-    private static Function<String, List<SeedEntry>> seedResolverPart1() {
-        return line -> Arrays.stream(line.substring(line.indexOf(":") + 1).trim().split(" "))
-                .map(String::trim)
-                .map(Long::parseLong)
-                .map(t -> new SeedEntry(t, 1))
-                .collect(Collectors.toList());
+    private static long lowestLocationNr(FrozenAlmanacMap[] maps, long fromSeedNr, long toSeedNr) {
+        long lowestLocationNr = Long.MAX_VALUE;
+        for (long seedNr = fromSeedNr; seedNr < toSeedNr; seedNr++) {
+            long calculatedLocationNr = seedNr;
+            for (FrozenAlmanacMap map : maps) {
+                calculatedLocationNr = map.getDestination(calculatedLocationNr);
+            }
+            lowestLocationNr = Math.min(lowestLocationNr, calculatedLocationNr);
+        }
+        return lowestLocationNr;
+    }
+
+    /**
+     * Part 1 reads every number on the seeds line as a single seed.
+     */
+    static List<SeedEntry> seedsPart1(Almanac almanac) {
+        List<SeedEntry> result = new ArrayList<>();
+        for (long seedValue : almanac.seedValues) {
+            result.add(new SeedEntry(seedValue, 1));
+        }
+        return result;
+    }
+
+    /**
+     * Part 2 reads the numbers on the seeds line as pairs of range start and length.
+     */
+    static List<SeedEntry> seedsPart2(Almanac almanac) {
+        List<SeedEntry> result = new ArrayList<>();
+        for (int i = 0; i + 1 < almanac.seedValues.length; i += 2) {
+            result.add(new SeedEntry(almanac.seedValues[i], almanac.seedValues[i + 1]));
+        }
+        return result;
+    }
+
+    static Almanac parseAlmanac(Input input) {
+        Almanac.Builder builder = new Almanac.Builder();
+        input.forEachLine(builder::addLine);
+        return builder.build();
+    }
+
+    /**
+     * {@link #calculateLowestLocationNr(Almanac, List)} in chunks of seeds on the fork-join pool of the calling thread,
+     * or the common pool. The chunks done are saved to the checkpoint every {@code reportInterval}, and a later run of
+     * the same almanac resumes from it.
+     */
+    static final class BruteForce {
+        private static final int CHECKPOINT_MAGIC = 0x414f4350; // "AOCP"
+
+        private final long chunkSize;
+        private final Path checkpoint;
+        private final Duration reportInterval;
+        private final Consumer<String> progress;
+
+        BruteForce(long chunkSize, Path checkpoint, Duration reportInterval, Consumer<String> progress) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            this.checkpoint = checkpoint;
+            this.reportInterval = reportInterval;
+            this.progress = progress;
+        }
+
+        long run(Almanac almanac, List<SeedEntry> seeds) {
+            return new Run(almanac, seeds).run();
+        }
+
+        private final class Run {
+            private final FrozenAlmanacMap[] maps;
+            private final long[] chunkFrom;
+            private final long[] chunkTo;
+            private final long fingerprint;
+            private final BitSet done;
+            private final LongAccumulator lowestLocationNr = new LongAccumulator(Math::min, Long.MAX_VALUE);
+            private final long startNanos = System.nanoTime();
+            private long totalSeeds;
+            private long seedsDone;
+            private long seedsThisRun;
+            private long lastReportNanos = startNanos;
+            // set when a chunk failed, so the chunks still running on other threads don't save over a later run
+            private volatile boolean stopped;
+
+            private Run(Almanac almanac, List<SeedEntry> seeds) {
+                this.maps = almanac.frozenMaps();
+                int chunks = 0;
+                for (SeedEntry seedEntry : seeds) {
+                    if (seedEntry.length() > 0) {
+                        chunks += Math.toIntExact(seedEntry.length() / chunkSize + (seedEntry.length() % chunkSize == 0 ? 0 : 1));
+                        totalSeeds += seedEntry.length();
+                    }
+                }
+                this.chunkFrom = new long[chunks];
+                this.chunkTo = new long[chunks];
+                int chunk = 0;
+                for (SeedEntry seedEntry : seeds) {
+                    long end = seedEntry.source() + seedEntry.length();
+                    for (long from = seedEntry.source(); from < end; from = chunkTo[chunk++]) {
+                        chunkFrom[chunk] = from;
+                        chunkTo[chunk] = from + Math.min(chunkSize, end - from);
+                    }
+                }
+                this.fingerprint = fingerprint(almanac, seeds);
+                this.done = new BitSet(chunkFrom.length);
+            }
+
+            private long run() {
+                resume();
+                int[] pending = new int[chunkFrom.length - done.cardinality()];
+                for (int chunk = done.nextClearBit(0), i = 0; chunk < chunkFrom.length; chunk = done.nextClearBit(chunk + 1)) {
+                    pending[i++] = chunk;
+                }
+                try {
+                    new ChunkTask(pending, 0, pending.length).invoke();
+                } catch (RuntimeException | Error e) {
+                    synchronized (this) {
+                        stopped = true;
+                    }
+                    throw e;
+                }
+                report();
+                if (checkpoint != null) {
+                    try {
+                        Files.deleteIfExists(checkpoint);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("can't delete checkpoint " + checkpoint, e);
+                    }
+                }
+                return lowestLocationNr.get();
+            }
+
+            private void walk(int chunk) {
+                if (stopped) {
+                    return;
+                }
+                Instrumentation.BatchEvent batch = Instrumentation.beginBatch("seed chunk");
+                long seeds = chunkTo[chunk] - chunkFrom[chunk];
+                lowestLocationNr.accumulate(lowestLocationNr(maps, chunkFrom[chunk], chunkTo[chunk]));
+                Instrumentation.endBatch(batch, seeds);
+                Instrumentation.count(MetricsSink.Counter.LOOKUPS, maps.length * seeds);
+                synchronized (this) {
+                    if (stopped) {
+                        return;
+                    }
+                    done.set(chunk);
+                    seedsDone += seeds;
+                    seedsThisRun += seeds;
+                    if (System.nanoTime() - lastReportNanos >= reportInterval.toNanos()) {
+                        save();
+                        report();
+                    }
+                }
+            }
+
+            private synchronized void report() {
+                lastReportNanos = System.nanoTime();
+                double seconds = Math.max((lastReportNanos - startNanos) / 1e9, 1e-9);
+                progress.accept(String.format("%d/%d chunks, %.1f%% of %d seeds, %.0f seeds/s, lowest so far %d",
+                        done.cardinality(), chunkFrom.length, 100.0 * seedsDone / Math.max(totalSeeds, 1), totalSeeds,
+                        seedsThisRun / seconds, lowestLocationNr.get()));
+            }
+
+            private void resume() {
+                if (checkpoint == null || !Files.exists(checkpoint)) {
+                    return;
+                }
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+                    if (in.readInt() != CHECKPOINT_MAGIC
+                            || in.readLong() != fingerprint
+                            || in.readLong() != chunkSize
+                            || in.readInt() != chunkFrom.length) {
+                        progress.accept("checkpoint " + checkpoint + " is of another run, starting over");
+                        return;
+                    }
+                    lowestLocationNr.accumulate(in.readLong());
+                    long[] words = new long[in.readInt()];
+                    for (int i = 0; i < words.length; i++) {
+                        words[i] = in.readLong();
+                    }
+                    done.or(BitSet.valueOf(words));
+                    for (int chunk = done.nextSetBit(0); chunk >= 0; chunk = done.nextSetBit(chunk + 1)) {
+                        seedsDone += chunkTo[chunk] - chunkFrom[chunk];
+                    }
+                    progress.accept("resuming from " + checkpoint + " with " + done.cardinality() + " chunks done");
+                } catch (IOException e) {
+                    progress.accept("can't read checkpoint " + checkpoint + ", starting over: " + e.getMessage());
+                }
+            }
+
+            /**
+             * Writes the checkpoint next to its final place and moves it over the old one, so an interrupted write
+             * leaves the previous checkpoint.
+             */
+            private void save() {
+                if (checkpoint == null) {
+                    return;
+                }
+                try {
+                    Path directory = checkpoint.toAbsolutePath().getParent();
+                    Files.createDirectories(directory);
+                    Path temporary = Files.createTempFile(directory, checkpoint.getFileName().toString(), ".tmp");
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                        out.writeInt(CHECKPOINT_MAGIC);
+                        out.writeLong(fingerprint);
+                        out.writeLong(chunkSize);
+                        out.writeInt(chunkFrom.length);
+                        out.writeLong(lowestLocationNr.get());
+                        ModelCache.writeLongs(done.toLongArray(), out);
+                    }
+                    Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("can't write checkpoint " + checkpoint, e);
+                }
+            }
+
+            private class ChunkTask extends RecursiveAction {
+                private final int[] chunks;
+                private final int from;
+                private final int to;
+
+                ChunkTask(int[] chunks, int from, int to) {
+                    this.chunks = chunks;
+                    this.from = from;
+                    this.to = to;
+                }
+
+                @Override
+                protected void compute() {
+                    if (to - from == 1) {
+                        walk(chunks[from]);
+                    } else if (to - from > 1) {
+                        int middle = (from + to) >>> 1;
+                        invokeAll(new ChunkTask(chunks, from, middle), new ChunkTask(chunks, middle, to));
+                    }
+                }
+            }
+        }
+
+        private static long fingerprint(Almanac almanac, List<SeedEntry> seeds) {
+            long result = 1;
+            for (SeedEntry seedEntry : seeds) {
+                result = 31 * (31 * result + seedEntry.source()) + seedEntry.length();
+            }
+            for (Stage stage : almanac.stages()) {
+                for (AlmanacMapEntry entry : stage.map().almanacMapEntries) {
+                    result = 31 * (31 * (31 * result + entry.source()) + entry.destination()) + entry.length();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The raw numbers of the seeds line and every {@code X-to-Y map:} section as a stage of a graph of categories.
+     * Composed functions between categories are cached; the one from seed to location is composed up front.
+     */
+    static class Almanac {
+        static final String SEED = "seed";
+        static final String LOCATION = "location";
+
+        private final long[] seedValues;
+        private final List<Stage> stages;
+        private final Map<String, List<Stage>> stagesBySource = new HashMap<>();
+        private final Map<String, PiecewiseLinearMap> composed = new ConcurrentHashMap<>();
+        private final List<AlmanacMap> seedToLocationMaps;
+        private final PiecewiseLinearMap seedToLocation;
+
+        private Almanac(long[] seedValues, List<Stage> stages) {
+            this.seedValues = seedValues;
+            this.stages = List.copyOf(stages);
+            for (Stage stage : this.stages) {
+                stagesBySource.computeIfAbsent(stage.source(), t -> new ArrayList<>()).add(stage);
+            }
+            this.seedToLocationMaps = path(SEED, LOCATION).stream().map(Stage::map).toList();
+            this.seedToLocation = composedMap(SEED, LOCATION);
+        }
+
+        List<Stage> stages() {
+            return stages;
+        }
+
+        /**
+         * The function from category {@code source} to category {@code target}, composed from the stages between
+         * them the first time it is asked for.
+         */
+        PiecewiseLinearMap composedMap(String source, String target) {
+            return composed.computeIfAbsent(source + "-to-" + target, key -> {
+                PiecewiseLinearMap result = PiecewiseLinearMap.IDENTITY;
+                for (Stage stage : path(source, target)) {
+                    result = result.andThen(PiecewiseLinearMap.of(stage.map()));
+                }
+                return result;
+            });
+        }
+
+        /**
+         * The shortest chain of stages from {@code source} to {@code target}, found breadth first.
+         */
+        private List<Stage> path(String source, String target) {
+            Map<String, Stage> reachedBy = new HashMap<>();
+            Deque<String> queue = new ArrayDeque<>(List.of(source));
+            while (!queue.isEmpty() && !reachedBy.containsKey(target) && !source.equals(target)) {
+                for (Stage stage : stagesBySource.getOrDefault(queue.removeFirst(), List.of())) {
+                    if (!stage.target().equals(source) && reachedBy.putIfAbsent(stage.target(), stage) == null) {
+                        queue.addLast(stage.target());
+                    }
+                }
+            }
+            if (!source.equals(target) && !reachedBy.containsKey(target)) {
+                throw new IllegalArgumentException("no maps lead from " + source + " to " + target);
+            }
+            List<Stage> result = new ArrayList<>();
+            for (String category = target; !category.equals(source); category = result.get(0).source()) {
+                result.add(0, reachedBy.get(category));
+            }
+            return result;
+        }
+
+        FrozenAlmanacMap[] frozenMaps() {
+            return maps().stream().map(AlmanacMap::freeze).toArray(FrozenAlmanacMap[]::new);
+        }
+
+        PiecewiseLinearMap seedToLocation() {
+            return seedToLocation;
+        }
+
+        /**
+         * The maps from seed to location, in the order they apply.
+         */
+        private List<AlmanacMap> maps() {
+            return seedToLocationMaps;
+        }
+
+        private static class Builder {
+            private long[] seedValues = new long[0];
+            private final List<Stage> stages = new ArrayList<>();
+            private String source;
+            private String target;
+            private List<AlmanacMapEntry> entries;
+
+            private void addLine(Line line) {
+                if (line.startsWith("seeds:")) {
+                    line.skipPast(':');
+                    List<Long> values = new ArrayList<>();
+                    while (line.hasNextNumber()) {
+                        values.add(line.nextLong());
+                    }
+                    seedValues = values.stream().mapToLong(Long::longValue).toArray();
+                } else if (line.length() > 0 && line.byteAt(line.length() - 1) == ':') {
+                    nextStage(line);
+                } else if (!line.isBlank()) {
+                    if (entries == null) {
+                        throw new IllegalStateException("map entry before any map header in line " + line.lineNr());
+                    }
+                    long destination = line.nextLong();
+                    long source = line.nextLong();
+                    long length = line.nextLong();
+                    entries.add(new AlmanacMapEntry(source, destination, length));
+                }
+            }
+
+            private void nextStage(Line header) {
+                String name = header.toString();
+                int separator = name.indexOf("-to-");
+                if (!name.endsWith(" map:") || separator <= 0) {
+                    throw new IllegalStateException("expected an 'X-to-Y map:' header in line " + header.lineNr() + ": " + name);
+                }
+                addStage();
+                source = name.substring(0, separator);
+                target = name.substring(separator + "-to-".length(), name.length() - " map:".length());
+                entries = new ArrayList<>();
+            }
+
+            private void addStage() {
+                if (entries != null) {
+                    stages.add(new Stage(source, target, new AlmanacMap(entries)));
+                }
+            }
+
+            private Almanac build() {
+                addStage();
+                return new Almanac(seedValues, stages);
+            }
+        }
     }
 
-    private static Function<String, List<SeedEntry>> seedResolverPart2() {
-        return line -> {
+    /**
+     * One {@code X-to-Y map:} section of the almanac.
+     */
+    record Stage(String source, String target, AlmanacMap map) {}
+
+    /**
+     * Stores the seed numbers and then every stage as its categories and its number of entries followed by source,
+     * destination and length of each entry.
+     */
+    static class AlmanacCodec implements ModelCodec<Almanac> {
+
+        @Override
+        public int version() {
+            return 2;
+        }
+
+        @Override
+        public void write(Almanac almanac, DataOutputStream out) throws IOException {
+            ModelCache.writeLongs(almanac.seedValues, out);
+            out.writeInt(almanac.stages.size());
+            for (Stage stage : almanac.stages) {
+                out.writeUTF(stage.source());
+                out.writeUTF(stage.target());
+                out.writeInt(stage.map().almanacMapEntries.size());
+                for (AlmanacMapEntry entry : stage.map().almanacMapEntries) {
+                    out.writeLong(entry.source());
+                    out.writeLong(entry.destination());
+                    out.writeLong(entry.length());
+                }
+            }
+        }
+
+        @Override
+        public Almanac read(ByteBuffer snapshot) {
+            long[] seedValues = ModelCache.readLongs(snapshot);
+            int size = snapshot.getInt();
+            List<Stage> stages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                stages.add(new Stage(readUtf(snapshot), readUtf(snapshot), readMap(snapshot)));
+            }
+            return new Almanac(seedValues, stages);
+        }
+
+        /**
+         * Reads a string as written by {@link DataOutputStream#writeUTF}, which is plain ASCII for category names.
+         */
+        private static String readUtf(ByteBuffer snapshot) {
+            byte[] bytes = new byte[snapshot.getShort() & 0xffff];
+            snapshot.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static AlmanacMap readMap(ByteBuffer snapshot) {
+            int size = snapshot.getInt();
+            List<AlmanacMapEntry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(new AlmanacMapEntry(snapshot.getLong(), snapshot.getLong(), snapshot.getLong()));
+            }
+            return new AlmanacMap(entries);
+        }
+    }
+
+    /**
+     * Where the sources of entries overlap, a number is mapped by the entry with the lowest source, and among entries
+     * with the same source by the first one.
+     */
+    static class AlmanacMap {
+        // sorted by source
+        private final List<AlmanacMapEntry> almanacMapEntries;
+        // the parts of the entries that map a number, sorted by source
+        private final List<AlmanacMapEntry> pieces;
+        private final FrozenAlmanacMap frozen;
+        private final int maxOverlappingDestinations;
+
+        AlmanacMap(List<AlmanacMapEntry> almanacMapEntries) {
+            List<AlmanacMapEntry> sorted = new ArrayList<>(almanacMapEntries);
+            sorted.sort(Comparator.comparingLong(AlmanacMapEntry::source));
+            this.almanacMapEntries = List.copyOf(sorted);
+            this.pieces = pieces(this.almanacMapEntries);
+            this.frozen = new FrozenAlmanacMap(pieces);
+            this.maxOverlappingDestinations = maxOverlappingDestinations(pieces);
+        }
+
+        /**
+         * Cuts every entry to the numbers that no entry before it maps, dropping the entries left empty.
+         */
+        private static List<AlmanacMapEntry> pieces(List<AlmanacMapEntry> sortedEntries) {
+            List<AlmanacMapEntry> result = new ArrayList<>(sortedEntries.size());
+            long position = Long.MIN_VALUE;
+            for (AlmanacMapEntry entry : sortedEntries) {
+                long end = entry.source() + entry.length();
+                if (entry.length() <= 0 || end <= position) {
+                    continue;
+                }
+                long start = Math.max(position, entry.source());
+                result.add(new AlmanacMapEntry(start, entry.getValue(start), end - start));
+                position = end;
+            }
+            return List.copyOf(result);
+        }
+
+        /**
+         * The same map in flat arrays, for lookups of single numbers in hot loops.
+         */
+        FrozenAlmanacMap freeze() {
+            return frozen;
+        }
+
+        /**
+         * The pieces from destination back to source. Numbers that no entry covers still map to themselves in the
+         * real map, which the inverted one doesn't know about.
+         */
+        InvertedAlmanacMap invert() {
+            return new InvertedAlmanacMap(pieces);
+        }
+
+        /**
+         * The most pieces whose destinations share a number.
+         */
+        int maxOverlappingDestinations() {
+            return maxOverlappingDestinations;
+        }
+
+        private static int maxOverlappingDestinations(List<AlmanacMapEntry> almanacMapEntries) {
+            long[] starts = new long[almanacMapEntries.size()];
+            long[] ends = new long[almanacMapEntries.size()];
+            int size = 0;
+            for (AlmanacMapEntry entry : almanacMapEntries) {
+                starts[size] = entry.destination();
+                ends[size++] = entry.destination() + entry.length();
+            }
+            Arrays.sort(starts, 0, size);
+            Arrays.sort(ends, 0, size);
+            int result = 0;
+            for (int i = 0, ended = 0; i < size; i++) {
+                while (ends[ended] <= starts[i]) {
+                    ended++;
+                }
+                result = Math.max(result, i + 1 - ended);
+            }
+            return result;
+        }
+
+        /**
+         * Maps every range to the ranges of its destinations: the parts covered by an entry are shifted by that
+         * entry, the gaps between entries map to themselves. Empty entries cover nothing and are skipped.
+         */
+        public List<SeedEntry> getDestinations(List<SeedEntry> ranges) {
             List<SeedEntry> result = new ArrayList<>();
-            String[] seedValues = line.substring(line.indexOf(":") + 1).trim().split(" ");
-            for (int i = 1; i < seedValues.length; i = i + 2) {
-                long start = Long.parseLong(seedValues[i - 1]);
-                long length = Long.parseLong(seedValues[i]);
-                result.add(new SeedEntry(start, length));
+            for (SeedEntry range : ranges) {
+                long position = range.source();
+                long end = range.source() + range.length();
+                for (AlmanacMapEntry entry : almanacMapEntries) {
+                    if (position >= end || entry.source() >= end) {
+                        break;
+                    }
+                    long entryEnd = entry.source() + entry.length();
+                    if (entry.length() <= 0 || entryEnd <= position) {
+                        continue;
+                    }
+                    if (entry.source() > position) {
+                        result.add(new SeedEntry(position, entry.source() - position));
+                        position = entry.source();
+                    }
+                    long pieceEnd = Math.min(end, entryEnd);
+                    result.add(new SeedEntry(entry.getValue(position), pieceEnd - position));
+                    position = pieceEnd;
+                }
+                if (position < end) {
+                    result.add(new SeedEntry(position, end - position));
+                }
             }
             return result;
-        };
-    }
-
-    private static Almanac parseAlmanac(URL resource, Function<String, List<SeedEntry>> seedResolver) throws URISyntaxException, IOException {
-        Almanac almanac = new Almanac();
-        AtomicReference<AlmanacMap> almanacMap = new AtomicReference<>();
-        getLines(resource)
-                .forEach(line -> {
-                    if (line.startsWith("seeds:")) {
-                        almanac.seeds = seedResolver.apply(line);
-                    } else if (line.startsWith("seed-to-soil map:")) {
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("soil-to-fertilizer map:")) {
-                        almanac.seedToSoilMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("fertilizer-to-water map:")) {
-                        almanac.soilToFertilizerMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("water-to-light map:")) {
-                        almanac.fertilizerToWaterMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("light-to-temperature map:")) {
-                        almanac.waterToLightMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("temperature-to-humidity map:")) {
-                        almanac.lightToTemperatureMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (line.startsWith("humidity-to-location map:")) {
-                        almanac.temperatureToHumidityMap = almanacMap.get();
-                        almanacMap.set(new AlmanacMap());
-                    } else if (!line.isBlank()) {
-                        String[] values = line.trim().split("\\s");
-                        almanacMap.get().addEntry(new AlmanacMapEntry(
-                                Long.parseLong(values[1].trim()),
-                                Long.parseLong(values[0].trim()),
-                                Long.parseLong(values[2].trim()))
-                        );
-                    }
-                });
-        almanac.humidityToLocationMap = almanacMap.get();
-        return almanac;
-    }
-
-
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
-    }
-
-    private static class Almanac {
-        private List<SeedEntry> seeds = new ArrayList<>();
-        private AlmanacMap seedToSoilMap;
-        private AlmanacMap soilToFertilizerMap;
-        private AlmanacMap fertilizerToWaterMap;
-        private AlmanacMap waterToLightMap;
-        private AlmanacMap lightToTemperatureMap;
-        private AlmanacMap temperatureToHumidityMap;
-        private AlmanacMap humidityToLocationMap;
-    }
-
-    private static class AlmanacMap {
-        private final List<AlmanacMapEntry> almanacMapEntries = new ArrayList<>();
-
-        public void addEntry(AlmanacMapEntry almanacMapEntry) {
-            almanacMapEntries.add(almanacMapEntry);
-        }
-
-        public long getDestination(long source) {
-            return almanacMapEntries.stream()
-                    .filter(t -> t.hasRecord(source))
-                    .map(t -> t.getValue(source))
-                    .findFirst()
-                    .orElse(source);
-        }
-    }
-
-    private record SeedEntry(long source, long length) {}
-
-    private record AlmanacMapEntry(long source, long destination, long length) {
+        }
+    }
+
+    /**
+     * A function that adds {@code offsets[i]} to the numbers from {@code starts[i]} up to the next start.
+     */
+    static final class PiecewiseLinearMap {
+        static final PiecewiseLinearMap IDENTITY = new PiecewiseLinearMap(new long[] {0}, new long[] {0}, 1);
+
+        private final long[] starts;
+        private final long[] offsets;
+
+        private PiecewiseLinearMap(long[] starts, long[] offsets, int size) {
+            this.starts = Arrays.copyOf(starts, size);
+            this.offsets = Arrays.copyOf(offsets, size);
+        }
+
+        static PiecewiseLinearMap of(AlmanacMap map) {
+            Builder builder = new Builder();
+            long position = 0;
+            for (AlmanacMapEntry entry : map.almanacMapEntries) {
+                long end = entry.source() + entry.length();
+                if (entry.length() <= 0 || end <= position) {
+                    continue;
+                }
+                if (entry.source() > position) {
+                    builder.add(position, 0);
+                }
+                builder.add(Math.max(position, entry.source()), entry.destination() - entry.source());
+                position = end;
+            }
+            builder.add(position, 0);
+            return builder.build();
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        /**
+         * Applies this map and then {@code next}: every piece is split where its image crosses a piece of next.
+         */
+        PiecewiseLinearMap andThen(PiecewiseLinearMap next) {
+            Builder builder = new Builder();
+            for (int i = 0; i < starts.length; i++) {
+                long offset = offsets[i];
+                long position = starts[i] + offset;
+                long end = end(i) == Long.MAX_VALUE ? Long.MAX_VALUE : end(i) + offset;
+                for (int j = next.pieceOf(position); position < end; j++) {
+                    builder.add(position - offset, offset + next.offsets[j]);
+                    position = Math.min(end, next.end(j));
+                }
+            }
+            return builder.build();
+        }
+
+        long get(long source) {
+            return source + offsets[pieceOf(source)];
+        }
+
+        /**
+         * Looks up all of {@code sortedSources}, which must be in ascending order, in one walk over the pieces.
+         */
+        void getAll(long[] sortedSources, long[] destinations) {
+            int piece = 0;
+            for (int i = 0; i < sortedSources.length; i++) {
+                long source = sortedSources[i];
+                while (piece + 1 < starts.length && starts[piece + 1] <= source) {
+                    piece++;
+                }
+                destinations[i] = source + offsets[piece];
+            }
+        }
+
+        /**
+         * The lowest destination of the sources from {@code from} up to {@code to}, exclusive. Within a piece that is
+         * the destination of its first source in the range.
+         */
+        long lowestDestination(long from, long to) {
+            long result = Long.MAX_VALUE;
+            long position = from;
+            for (int piece = pieceOf(from); position < to; piece++) {
+                result = Math.min(result, position + offsets[piece]);
+                position = end(piece);
+            }
+            return result;
+        }
+
+        private long end(int piece) {
+            return piece + 1 < starts.length ? starts[piece + 1] : Long.MAX_VALUE;
+        }
+
+        /**
+         * Index of the last piece that starts at or before {@code source}.
+         */
+        private int pieceOf(long source) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (starts[middle] <= source) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Collects pieces in order of their start, merging a piece into the one before it when they shift by the same
+         * offset.
+         */
+        private static class Builder {
+            private long[] starts = new long[16];
+            private long[] offsets = new long[16];
+            private int size;
+
+            private void add(long start, long offset) {
+                if (size > 0 && offsets[size - 1] == offset) {
+                    return;
+                }
+                if (size == starts.length) {
+                    starts = Arrays.copyOf(starts, size * 2);
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                }
+                starts[size] = start;
+                offsets[size] = offset;
+                size++;
+            }
+
+            private PiecewiseLinearMap build() {
+                return new PiecewiseLinearMap(starts, offsets, size);
+            }
+        }
+    }
+
+    /**
+     * The pieces of an {@link AlmanacMap} as parallel arrays sorted by source, searched in Eytzinger order. Pieces
+     * don't overlap, so the last one that starts at or before a number is the only one that may map it.
+     */
+    static final class FrozenAlmanacMap {
+        private final long[] starts;
+        private final long[] lengths;
+        private final long[] deltas;
+        // starts in Eytzinger order from index 1, and the sorted index of each of them
+        private final long[] tree;
+        private final int[] rank;
+
+        private FrozenAlmanacMap(List<AlmanacMapEntry> pieces) {
+            int size = pieces.size();
+            starts = new long[size];
+            lengths = new long[size];
+            deltas = new long[size];
+            for (int i = 0; i < size; i++) {
+                AlmanacMapEntry piece = pieces.get(i);
+                starts[i] = piece.source();
+                lengths[i] = piece.length();
+                deltas[i] = piece.destination() - piece.source();
+            }
+            tree = new long[size + 1];
+            rank = new int[size + 1];
+            layout(0, 1);
+        }
+
+        /**
+         * Fills the subtree at {@code node} in order with the sorted starts from {@code next}, returns the next one.
+         */
+        private int layout(int next, int node) {
+            if (node < tree.length) {
+                next = layout(next, 2 * node);
+                tree[node] = starts[next];
+                rank[node] = next++;
+                next = layout(next, 2 * node + 1);
+            }
+            return next;
+        }
+
+        long getDestination(long source) {
+            int entry = entryOf(source);
+            return entry >= 0 ? source + deltas[entry] : source;
+        }
+
+        /**
+         * Whether an entry maps {@code source}, rather than it mapping to itself.
+         */
+        boolean covers(long source) {
+            return entryOf(source) >= 0;
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        private int entryOf(long source) {
+            int node = 1;
+            while (node < tree.length) {
+                node = 2 * node + (tree[node] <= source ? 1 : 0);
+            }
+            // drop the steps to the right after the last step to the left, leaving the first start above source
+            node >>= Integer.numberOfTrailingZeros(~node) + 1;
+            int entry = (node == 0 ? starts.length : rank[node]) - 1;
+            return entry >= 0 && source - starts[entry] < lengths[entry] ? entry : -1;
+        }
+    }
+
+    /**
+     * The pieces of an {@link AlmanacMap} from destination back to source, sorted by destination. Destinations may
+     * overlap, so every piece up to a number may cover it, and each of them is a source the map really sends there.
+     */
+    static final class InvertedAlmanacMap {
+        private final long[] starts;
+        private final long[] lengths;
+        private final long[] deltas;
+        // highest end of the entries up to each one
+        private final long[] maxEnds;
+
+        private InvertedAlmanacMap(List<AlmanacMapEntry> pieces) {
+            List<AlmanacMapEntry> sorted = new ArrayList<>(pieces);
+            sorted.sort(Comparator.comparingLong(AlmanacMapEntry::destination));
+            int size = sorted.size();
+            starts = new long[size];
+            lengths = new long[size];
+            deltas = new long[size];
+            maxEnds = new long[size];
+            long maxEnd = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                AlmanacMapEntry entry = sorted.get(i);
+                starts[i] = entry.destination();
+                lengths[i] = entry.length();
+                deltas[i] = entry.source() - entry.destination();
+                maxEnd = Math.max(maxEnd, entry.destination() + entry.length());
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        /**
+         * Index of the last entry that starts at or before {@code destination}, or -1.
+         */
+        int last(long destination) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= destination) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        boolean mayCover(int entry, long destination) {
+            return maxEnds[entry] > destination;
+        }
+
+        boolean covers(int entry, long destination) {
+            return destination - starts[entry] < lengths[entry];
+        }
+
+        long sourceOf(int entry, long destination) {
+            return destination + deltas[entry];
+        }
+    }
+
+    /**
+     * Tries locations from 0 up to the location of the first seed of a range, following each back through the inverted
+     * maps to a seed. A number can have several sources in a map, so the way back branches.
+     */
+    static final class ReverseSearch {
+        private final FrozenAlmanacMap[] maps;
+        private final InvertedAlmanacMap[] inverted;
+        private final SeedIndex seedIndex;
+        private final long upperBound;
+
+        ReverseSearch(Almanac almanac, List<SeedEntry> seeds) {
+            this.maps = almanac.frozenMaps();
+            this.inverted = almanac.maps().stream().map(AlmanacMap::invert).toArray(InvertedAlmanacMap[]::new);
+            this.seedIndex = new SeedIndex(seeds);
+            this.upperBound = upperBound(almanac, seeds);
+        }
+
+        /**
+         * Binary search steps the search may take, counting as ways back through a map one more than the most entries
+         * overlapping on the destination side. This bounds the branching rather than measuring it.
+         */
+        static long estimatedCost(Almanac almanac, List<SeedEntry> seeds) {
+            List<AlmanacMap> maps = almanac.maps();
+            double ways = 1;
+            double stepsPerLocation = 0;
+            for (int map = maps.size() - 1; map >= 0; map--) {
+                stepsPerLocation += ways * 2 * (64 - Long.numberOfLeadingZeros(maps.get(map).freeze().size() + 1));
+                ways *= maps.get(map).maxOverlappingDestinations() + 1;
+            }
+            stepsPerLocation += ways * (64 - Long.numberOfLeadingZeros(seeds.size() + 1));
+            return (long) (upperBound(almanac, seeds) * stepsPerLocation);
+        }
+
+        private static long upperBound(Almanac almanac, List<SeedEntry> seeds) {
+            long result = Long.MAX_VALUE;
+            for (SeedEntry seedEntry : seeds) {
+                if (seedEntry.length() > 0) {
+                    result = Math.min(result, almanac.seedToLocation.get(seedEntry.source()));
+                }
+            }
+            return result;
+        }
+
+        long search() {
+            if (upperBound == Long.MAX_VALUE) {
+                // no seeds
+                return Long.MAX_VALUE;
+            }
+            long location = 0;
+            while (location < upperBound && !reaches(location, maps.length - 1)) {
+                location++;
+            }
+            Instrumentation.count(MetricsSink.Counter.LOOKUPS, maps.length * location);
+            return location;
+        }
+
+        private boolean reaches(long value, int map) {
+            if (map < 0) {
+                return seedIndex.contains(value);
+            }
+            InvertedAlmanacMap inverse = inverted[map];
+            for (int entry = inverse.last(value); entry >= 0 && inverse.mayCover(entry, value); entry--) {
+                if (inverse.covers(entry, value) && reaches(inverse.sourceOf(entry, value), map - 1)) {
+                    return true;
+                }
+            }
+            return !maps[map].covers(value) && reaches(value, map - 1);
+        }
+    }
+
+    /**
+     * The seed ranges merged where they overlap or touch, sorted, for a binary search of a single seed.
+     */
+    static final class SeedIndex {
+        private final long[] starts;
+        private final long[] ends;
+
+        SeedIndex(List<SeedEntry> seeds) {
+            List<SeedEntry> sorted = new ArrayList<>(seeds);
+            sorted.removeIf(t -> t.length() <= 0);
+            sorted.sort(Comparator.comparingLong(SeedEntry::source));
+            long[] starts = new long[sorted.size()];
+            long[] ends = new long[sorted.size()];
+            int size = 0;
+            for (SeedEntry seedEntry : sorted) {
+                long end = seedEntry.source() + seedEntry.length();
+                if (size > 0 && seedEntry.source() <= ends[size - 1]) {
+                    ends[size - 1] = Math.max(ends[size - 1], end);
+                } else {
+                    starts[size] = seedEntry.source();
+                    ends[size++] = end;
+                }
+            }
+            this.starts = Arrays.copyOf(starts, size);
+            this.ends = Arrays.copyOf(ends, size);
+        }
+
+        boolean contains(long seedNr) {
+            int low = 0;
+            int high = starts.length;
+            // first range that starts after seedNr
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= seedNr) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low > 0 && seedNr < ends[low - 1];
+        }
+    }
+
+    record SeedEntry(long source, long length) {}
+
+    record AlmanacMapEntry(long source, long destination, long length) {
         public  boolean hasRecord(long id) {
-            return id >= source && id <= source + length;
+            return id >= source && id < source + length;
         }
 
         public long getValue(long id) {
@@ -1,54 +1,40 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
-public class Day6 {
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("Part 1 test: " + calculatePart1Test());
-        System.out.println("Part 1: " + calculatePart1());
-        System.out.println("Part 2 test: " + calculatePart2Test());
-        System.out.println("Part 2: " + calculatePart2());
+public class Day6 implements Solver<Day6.Races> {
+    public static void main(String[] args) {
+        Races testRaces = parseRaces(Input.of("/day6-test.txt"));
+        Races races = parseRaces(Input.of("/day6.txt"));
+        System.out.println("Part 1 test: " + calculate(testRaces.records()));
+        System.out.println("Part 1: " + calculate(races.records()));
+        System.out.println("Part 2 test: " + calculate(List.of(testRaces.combinedRecord())));
+        System.out.println("Part 2: " + calculate(List.of(races.combinedRecord())));
     }
 
-    private static long calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day6-test.txt");
-        return calculatePart1(resource);
+    @Override
+    public int day() {
+        return 6;
     }
 
-    private static long calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day6.txt");
-        return calculatePart1(resource);
+    @Override
+    public Races parse(Input input) {
+        return parseRaces(input);
     }
 
-    private static long calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day6-test.txt");
-        return calculatePart2(resource);
+    @Override
+    public Object part1(Races model) {
+        return calculate(model.records());
     }
 
-    private static long calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day6.txt");
-        return calculatePart2(resource);
+    @Override
+    public Object part2(Races model) {
+        return calculate(List.of(model.combinedRecord()));
     }
 
-    private static long calculatePart1(URL resource) throws URISyntaxException, IOException {
-        List<Record> records = parseToRecordList(resource);
-        return calculate(records);
-    }
-
-    private static long calculatePart2(URL resource) throws URISyntaxException, IOException {
-        List<Record> records = parseToRecordListPart2(resource);
-        return calculate(records);
-    }
-
-    private static long calculate(List<Record> records) {
+    static long calculate(List<Record> records) {
         return records.stream()
                 .map(Day6::calculateIntersectionsNewRecord)
                 .map(t -> (long)Math.floor(t.x2) - (long)Math.ceil(t.x1) + 1)
@@ -56,20 +42,41 @@ public class Day6 {
                 .orElse(0L);
     }
 
-    private static List<Record> parseToRecordList(URL resource) throws URISyntaxException, IOException {
-        List<String> lines = getLines(resource).toList();
-        String[] timeArray = lines.get(0).split("\\s+");
-        String[] distanceArray = lines.get(1).split("\\s+");
-        return IntStream.range(1, timeArray.length)
-                .mapToObj(i -> new Record(Long.parseLong(timeArray[i].trim()), Long.parseLong(distanceArray[i].trim())))
+    /**
+     * Reads both the separate races of part 1 and the single race of part 2, whose numbers are the concatenated digits
+     * of each line. Blank lines are skipped, and lines after the distances ignored.
+     */
+    static Races parseRaces(Input input) {
+        List<Long> times = new ArrayList<>();
+        List<Long> distances = new ArrayList<>();
+        long[] combined = new long[2];
+        int[] lineCount = {0};
+        input.forEachLine(line -> {
+            if (line.isBlank() || lineCount[0] == combined.length) {
+                return;
+            }
+            int lineNr = lineCount[0]++;
+            combined[lineNr] = concatenateDigits(line);
+            List<Long> values = lineNr == 0 ? times : distances;
+            while (line.hasNextNumber()) {
+                values.add(line.nextLong());
+            }
+        });
+        List<Record> records = IntStream.range(0, times.size())
+                .mapToObj(i -> new Record(times.get(i), distances.get(i)))
                 .toList();
+        return new Races(records, new Record(combined[0], combined[1]));
     }
 
-    private static List<Record> parseToRecordListPart2(URL resource) throws URISyntaxException, IOException {
-        List<String> lines = getLines(resource).toList();
-        String time = lines.get(0).replaceAll("\\s+", "").split(":")[1];
-        String distance = lines.get(1).replaceAll("\\s+", "").split(":")[1];
-        return List.of(new Record(Long.parseLong(time), Long.parseLong(distance)));
+    private static long concatenateDigits(Line line) {
+        long result = 0;
+        for (int i = 0; i < line.length(); i++) {
+            byte b = line.byteAt(i);
+            if (b >= '0' && b <= '9') {
+                result = result * 10 + (b - '0');
+            }
+        }
+        return result;
     }
 
     public static IntersectionResult calculateIntersectionsNewRecord(Record record) {
@@ -83,9 +90,7 @@ public class Day6 {
         return new IntersectionResult(x1, x2);
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
-    }
+    public record Races(List<Record> records, Record combinedRecord) {}
 
     public record Record(long time, long distance) {}
 
@@ -1,20 +1,15 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
-public class Day7 {
+public class Day7 implements Solver<List<Day7.Hand>> {
 
     private static final List<Character> CARD_RANKING_ORDER = List.of('2', '3', '4', '5', '6', '7', '8', '9', 'T', 'J', 'Q', 'K', 'A');
     private static final List<Character> CARD_WITH_JOKER_RANKING_ORDER = List.of('J', '2', '3', '4', '5', '6', '7', '8', '9', 'T', 'Q', 'K', 'A');
@@ -34,61 +29,59 @@ public class Day7 {
         }
     }
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("Part 1 test: " + calculatePart1Test() + "\n");
-        System.out.println("Part 1: " + calculatePart1() + "\n");
-        System.out.println("Part 2 test: " + calculatePart2Test() + "\n");
-        System.out.println("Part 2: " + calculatePart2() + "\n");
+    public static void main(String[] args) {
+        List<Hand> testHands = parseHands(Input.of("/day7-test.txt"));
+        List<Hand> hands = parseHands(Input.of("/day7.txt"));
+        System.out.println("Part 1 test: " + calculate(testHands, getPart1Comparator()));
+        System.out.println("Part 1: " + calculate(hands, getPart1Comparator()));
+        System.out.println("Part 2 test: " + calculate(testHands, getPart2Comparator()));
+        System.out.println("Part 2: " + calculate(hands, getPart2Comparator()));
     }
 
-    private static long calculatePart1Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day7-test.txt");
-        return calculate(resource, getPart1Comparator());
+    @Override
+    public int day() {
+        return 7;
     }
 
-    private static long calculatePart1() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day7.txt");
-        return calculate(resource, getPart1Comparator());
+    @Override
+    public List<Hand> parse(Input input) {
+        return parseHands(input);
     }
 
-    private static long calculatePart2Test() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day7-test.txt");
-        return calculate(resource, getPart2Comparator());
+    @Override
+    public Object part1(List<Hand> model) {
+        return calculate(model, getPart1Comparator());
     }
 
-    private static long calculatePart2() throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource("/day7.txt");
-        return calculate(resource, getPart2Comparator());
+    @Override
+    public Object part2(List<Hand> model) {
+        return calculate(model, getPart2Comparator());
     }
 
-    private static long calculate(URL resource, Comparator<Hand> comparator) throws URISyntaxException, IOException {
-        long time = System.currentTimeMillis();
+    static List<Hand> parseHands(Input input) {
+        List<Hand> hands = new ArrayList<>();
+        input.forEachLine(line -> hands.add(parseHand(line)));
+        return Collections.unmodifiableList(hands);
+    }
 
-        List<Hand> hands = getLines(resource)
-                .map(Day7::parseHand)
+    static long calculate(List<Hand> hands, Comparator<Hand> comparator) {
+        List<Hand> sortedHands = hands.stream()
                 .sorted(comparator)
                 .toList();
-        long result = IntStream.rangeClosed(1, hands.size())
-                .mapToLong(i -> hands.get(i - 1).bid() * i)
+        return IntStream.rangeClosed(1, sortedHands.size())
+                .mapToLong(i -> sortedHands.get(i - 1).bid() * i)
                 .sum();
-
-        System.out.println("time spent: " + (System.currentTimeMillis() - time) + "ms");
-        return result;
-    }
-
-    private static Hand parseHand(String hand) {
-        String[] split = hand.split("\\s+");
-        List<Character> cards = split[0].trim().chars()
-                .mapToObj(t -> (char) t)
-                .toList();
-        return new Hand(cards, Long.parseLong(split[1].trim()));
     }
 
-    private static Stream<String> getLines(URL resource) throws URISyntaxException, IOException {
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    private static Hand parseHand(Line hand) {
+        List<Character> cards = new ArrayList<>(5);
+        for (int i = 0; i < 5; i++) {
+            cards.add(hand.charAt(i));
+        }
+        return new Hand(cards, hand.position(5).nextLong());
     }
 
-    private static Comparator<Hand> getPart1Comparator() {
+    static Comparator<Hand> getPart1Comparator() {
         return (o1, o2) -> {
             int compare = Integer.compare(o1.getHandType().ordinal(), o2.getHandType().ordinal());
             if (compare != 0) return compare;
@@ -96,7 +89,7 @@ public class Day7 {
         };
     }
 
-    private static Comparator<Hand> getPart2Comparator() {
+    static Comparator<Hand> getPart2Comparator() {
         return (o1, o2) -> {
             int compare = Integer.compare(o1.getHandTypeWithJoker().ordinal(), o2.getHandTypeWithJoker().ordinal());
             if (compare != 0) return compare;
@@ -112,7 +105,7 @@ public class Day7 {
                 .orElse(0);
     }
 
-    private record Hand(List<Character> cards, long bid) {
+    record Hand(List<Character> cards, long bid) {
 
         public HandType getHandType() {
             List<Integer> cardAmounts = this.cards.stream()
@@ -1,82 +1,294 @@
 package net.stiekema.jeroen.aoc2023;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
-public class Day8 {
-    public static void main(String[] args) throws URISyntaxException, IOException {
+public class Day8 implements Solver<Day8.Struct> {
+    public static void main(String[] args) {
         System.out.println("Part 1 test 1: " + calculatePart1("/day8-test.txt"));
         System.out.println("Part 1 test 2: " + calculatePart1("/day8-test2.txt"));
-        System.out.println("Part 1: " + calculatePart1("/day8.txt"));
+        Struct struct = buildStruct(Input.of("/day8.txt"));
+        System.out.println("Part 1: " + calculatePart1(struct));
         System.out.println("Part 2 test: " + calculatePart2("/day8-test3.txt"));
-        System.out.println("Part 2: " + calculatePart2("/day8.txt"));
+        System.out.println("Part 2: " + calculatePart2(struct));
     }
 
-    private static long calculatePart1(String file) throws URISyntaxException, IOException {
-        Struct struct = buildStruct(file);
-        return struct.calculateNrOfSteps("AAA"::equals, "ZZZ"::equals);
+    @Override
+    public int day() {
+        return 8;
     }
 
-    private static long calculatePart2(String file) throws URISyntaxException, IOException {
-        Struct struct = buildStruct(file);
-        return struct.calculateNrOfSteps(node -> node.endsWith("A"), node -> node.endsWith("Z"));
+    @Override
+    public Struct parse(Input input) {
+        return buildStruct(input);
+    }
+
+    @Override
+    public Object part1(Struct model) {
+        return calculatePart1(model);
+    }
+
+    @Override
+    public Object part2(Struct model) {
+        return calculatePart2(model);
+    }
+
+    @Override
+    public ModelCodec<Struct> codec() {
+        return new StructCodec();
+    }
+
+    private static long calculatePart1(String file) {
+        return calculatePart1(buildStruct(Input.of(file)));
     }
 
-    private static Struct buildStruct(String fileName) throws URISyntaxException, IOException {
-        List<Character> instructions = getLines(fileName).findFirst()
-                .map(line -> line.chars()
-                        .mapToObj(c -> (char) c)
-                        .toList()
-                ).orElseThrow();
+    private static long calculatePart2(String file) {
+        return calculatePart2(buildStruct(Input.of(file)));
+    }
 
-        Map<String, Vertex> network = new HashMap<>();
-        getLines(fileName)
-                .skip(2)
-                .map(line -> line.split("[\\s=(),]+"))
-                .forEach(t -> network.put(t[0], new Vertex(t[1], t[2])));
+    static long calculatePart1(Struct struct) {
+        return struct.calculateNrOfSteps("AAA"::equals, "ZZZ"::equals);
+    }
 
-        return new Struct(instructions, network);
+    static long calculatePart2(Struct struct) {
+        return struct.calculateNrOfSteps(node -> node.endsWith("A"), node -> node.endsWith("Z"));
     }
 
-    private static Stream<String> getLines(String fileName) throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource(fileName);
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    static Struct buildStruct(Input input) {
+        Struct.Builder builder = new Struct.Builder();
+        input.forEachLine(builder::addLine);
+        return builder.build();
     }
 
-    private record Struct(List<Character> instructions, Map<String, Vertex> network) {
+    /**
+     * The network with every node name replaced by a dense id; {@code left[id]} and {@code right[id]} hold the ids of
+     * the nodes it leads to.
+     */
+    record Struct(char[] instructions, NodeIndex nodes, int[] left, int[] right) {
         private long calculateNrOfSteps(Predicate<String> startPredicate, Predicate<String> finishPredicate) {
-            return network.keySet().stream()
-                    .filter(startPredicate)
-                    .map(startNode -> calculateNrOfSteps(startNode, finishPredicate))
+            boolean[] finishNodes = new boolean[nodes.size()];
+            for (int node = 0; node < nodes.size(); node++) {
+                finishNodes[node] = finishPredicate.test(nodes.name(node));
+            }
+            return IntStream.range(0, nodes.size())
+                    .filter(node -> startPredicate.test(nodes.name(node)))
+                    .mapToLong(startNode -> calculateNrOfSteps(startNode, finishNodes))
                     .reduce(Math::lcm).orElseThrow();
         }
 
-        private long calculateNrOfSteps(String startNode, Predicate<String> finishPredicate) {
+        private long calculateNrOfSteps(int startNode, boolean[] finishNodes) {
+            Instrumentation.BatchEvent batch = Instrumentation.beginBatch("ghost walk");
             long stepNr = 0;
-            Vertex currentVertex = network.get(startNode);
+            int currentNode = startNode;
             while (true) {
-                Character nextInstruction = instructions.get((int) (stepNr++ % instructions.size()));
-                String nextNode = currentVertex.next(nextInstruction);
-                if (finishPredicate.test(nextNode)) {
+                char nextInstruction = instructions[(int) (stepNr++ % instructions.length)];
+                int nextNode = nextInstruction == 'L' ? left[currentNode] : right[currentNode];
+                if (finishNodes[nextNode]) {
+                    Instrumentation.endBatch(batch, stepNr);
+                    Instrumentation.count(MetricsSink.Counter.LOOKUPS, stepNr);
                     return stepNr;
                 }
-                currentVertex = network.get(nextNode);
+                currentNode = nextNode;
+            }
+        }
+
+        private static class Builder {
+            private char[] instructions;
+            private final NodeIndex nodes = new NodeIndex();
+            private int[] left = new int[1024];
+            private int[] right = new int[1024];
+
+            private void addLine(Line line) {
+                if (line.lineNr() == 0) {
+                    instructions = line.toCharArray();
+                } else if (!line.isBlank()) {
+                    int node = nextNode(line);
+                    int leftNode = nextNode(line);
+                    int rightNode = nextNode(line);
+                    if (nodes.size() > left.length) {
+                        left = Arrays.copyOf(left, java.lang.Math.max(left.length * 2, nodes.size()));
+                        right = Arrays.copyOf(right, left.length);
+                    }
+                    left[node] = leftNode;
+                    right[node] = rightNode;
+                }
+            }
+
+            private int nextNode(Line line) {
+                int start = line.position();
+                while (!isNameCharacter(line.byteAt(start))) {
+                    start++;
+                }
+                int end = start;
+                while (end < line.length() && isNameCharacter(line.byteAt(end))) {
+                    end++;
+                }
+                line.position(end);
+                return nodes.idOf(line, start, end);
+            }
+
+            private static boolean isNameCharacter(byte b) {
+                return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9');
+            }
+
+            private Struct build() {
+                return new Struct(instructions, nodes, Arrays.copyOf(left, nodes.size()), Arrays.copyOf(right, nodes.size()));
+            }
+        }
+    }
+
+    /**
+     * Stores the instructions, the node names with their offsets and the left and right ids.
+     */
+    static class StructCodec implements ModelCodec<Struct> {
+
+        @Override
+        public void write(Struct struct, DataOutputStream out) throws IOException {
+            out.writeInt(struct.instructions().length);
+            for (char instruction : struct.instructions()) {
+                out.writeByte(instruction);
+            }
+            NodeIndex nodes = struct.nodes();
+            ModelCache.writeBytes(nodes.names, nodes.nameOffsets[nodes.size()], out);
+            ModelCache.writeInts(nodes.nameOffsets, nodes.size() + 1, out);
+            ModelCache.writeInts(struct.left(), out);
+            ModelCache.writeInts(struct.right(), out);
+        }
+
+        @Override
+        public Struct read(ByteBuffer snapshot) {
+            char[] instructions = new char[snapshot.getInt()];
+            for (int i = 0; i < instructions.length; i++) {
+                instructions[i] = (char) snapshot.get();
             }
+            byte[] names = ModelCache.readBytes(snapshot);
+            int[] nameOffsets = ModelCache.readInts(snapshot);
+            return new Struct(instructions, NodeIndex.restore(names, nameOffsets),
+                    ModelCache.readInts(snapshot), ModelCache.readInts(snapshot));
         }
     }
 
-    private record Vertex(String left, String right) {
-        String next(char instruction) {
-            return instruction == 'L' ? left : right;
+    /**
+     * Open addressing table from node name bytes to a dense id, so building the network doesn't need a
+     * {@code String} per name.
+     */
+    static final class NodeIndex {
+        private byte[] names = new byte[4096];
+        private int[] nameOffsets = new int[1025];
+        private int[] table = newTable(2048);
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        String name(int id) {
+            return new String(names, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id]);
+        }
+
+        int idOf(Line line, int start, int end) {
+            int mask = table.length - 1;
+            int slot = hash(line, start, end) & mask;
+            while (table[slot] >= 0) {
+                if (matches(table[slot], line, start, end)) {
+                    return table[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            int id = add(line, start, end);
+            table[slot] = id;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private int add(Line line, int start, int end) {
+            int offset = nameOffsets[size];
+            int length = end - start;
+            if (offset + length > names.length) {
+                names = Arrays.copyOf(names, java.lang.Math.max(names.length * 2, offset + length));
+            }
+            for (int i = 0; i < length; i++) {
+                names[offset + i] = line.byteAt(start + i);
+            }
+            if (size + 2 > nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+            }
+            nameOffsets[size + 1] = offset + length;
+            return size++;
+        }
+
+        private boolean matches(int id, Line line, int start, int end) {
+            int offset = nameOffsets[id];
+            if (nameOffsets[id + 1] - offset != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (names[offset++] != line.byteAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Rebuilds an index from the names and offsets written by {@link StructCodec}.
+         */
+        static NodeIndex restore(byte[] names, int[] nameOffsets) {
+            NodeIndex result = new NodeIndex();
+            result.names = names;
+            result.nameOffsets = nameOffsets;
+            result.size = nameOffsets.length - 1;
+            result.table = newTable(Integer.highestOneBit(java.lang.Math.max(result.size, 1)) * 4);
+            result.reindex();
+            return result;
+        }
+
+        private void rehash() {
+            table = newTable(table.length * 2);
+            reindex();
+        }
+
+        private void reindex() {
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = hash(names, nameOffsets[id], nameOffsets[id + 1]) & mask;
+                while (table[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id;
+            }
+        }
+
+        private static int hash(Line line, int start, int end) {
+            int result = 1;
+            for (int i = start; i < end; i++) {
+                result = 31 * result + line.byteAt(i);
+            }
+            return mix(result);
+        }
+
+        private static int hash(byte[] bytes, int start, int end) {
+            int result = 1;
+            for (int i = start; i < end; i++) {
+                result = 31 * result + bytes[i];
+            }
+            return mix(result);
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static int[] newTable(int capacity) {
+            int[] result = new int[capacity];
+            Arrays.fill(result, -1);
+            return result;
         }
     }
 
@@ -1,77 +1,78 @@
 package net.stiekema.jeroen.aoc2023;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
-public class Day9 {
+public class Day9 implements Solver<Day9.Extrapolations> {
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
-        System.out.println("Part 1 test: " + calculatePart1("/day9-test.txt"));
-        System.out.println("Part 1: " + calculatePart1("/day9.txt"));
-        System.out.println("Part 2 test: " + calculatePart2("/day9-test.txt"));
-        System.out.println("Part 2: " + calculatePart2("/day9.txt"));
+    public static void main(String[] args) {
+        Extrapolations test = calculateExtrapolations(Input.of("/day9-test.txt"));
+        Extrapolations extrapolations = calculateExtrapolations(Input.of("/day9.txt"));
+        System.out.println("Part 1 test: " + test.next());
+        System.out.println("Part 1: " + extrapolations.next());
+        System.out.println("Part 2 test: " + test.previous());
+        System.out.println("Part 2: " + extrapolations.previous());
     }
 
-    public static long calculatePart1(String file) throws URISyntaxException, IOException {
-        return getLines(file)
-                .map(t -> t.split("\\s+"))
-                .map(Arrays::asList)
-                .map(t -> t.stream().mapToLong(Long::parseLong).boxed().collect(Collectors.toList()))
-                .mapToLong(Day9::extrapolate)
-                .sum();
+    @Override
+    public int day() {
+        return 9;
     }
 
-    public static long calculatePart2(String file) throws URISyntaxException, IOException {
-        return getLines(file)
-                .map(t -> t.split("\\s+"))
-                .map(Arrays::asList)
-                .map(Utils::reverse)
-                .map(t -> t.stream().mapToLong(Long::parseLong).boxed().collect(Collectors.toList()))
-                .mapToLong(Day9::extrapolate)
-                .sum();
+    @Override
+    public Extrapolations parse(Input input) {
+        return calculateExtrapolations(input);
     }
 
-    private static long extrapolate(List<Long> input) {
-        return extrapolate(input, new ArrayDeque<>());
+    @Override
+    public Object part1(Extrapolations model) {
+        return model.next();
     }
 
-    private static long extrapolate(List<Long> input, Deque<Long> stack) {
-        if (input.stream().allMatch(Long.valueOf(0L)::equals)) {
-            return stack.stream().reduce(Long::sum).orElse(0L);
-        }
-
-        stack.push(input.get(input.size() - 1));
-        return extrapolate(
-                IntStream.range(1, input.size())
-                        .mapToObj(i -> input.get(i) - input.get(i - 1))
-                        .toList(),
-                stack
-        );
+    @Override
+    public Object part2(Extrapolations model) {
+        return model.previous();
     }
 
-    private static Stream<String> getLines(String fileName) throws URISyntaxException, IOException {
-        URL resource = Day3.class.getResource(fileName);
-        return Files.lines(Paths.get(resource.toURI()), StandardCharsets.UTF_8);
+    /**
+     * Extrapolates every history forwards and backwards in a single scan of the input, reusing one buffer for the
+     * difference table.
+     */
+    static Extrapolations calculateExtrapolations(Input input) {
+        long[][] buffer = {new long[32]};
+        long[] sums = new long[2];
+        input.forEachLine(line -> {
+            int length = 0;
+            while (line.hasNextNumber()) {
+                if (length == buffer[0].length) {
+                    buffer[0] = Arrays.copyOf(buffer[0], length * 2);
+                }
+                buffer[0][length++] = line.nextLong();
+            }
+            extrapolate(buffer[0], length, sums);
+        });
+        return new Extrapolations(sums[0], sums[1]);
     }
 
-    private static class Utils {
-        public static <T> List<T> reverse(List<T> list) {
-            ArrayList<T> result = new ArrayList<>(list);
-            Collections.reverse(result);
-            return result;
+    /**
+     * Replaces {@code values} level by level with its differences in place. The next value is the sum of the last
+     * element of every level, the previous value the alternating sum of the first elements.
+     */
+    private static void extrapolate(long[] values, int length, long[] sums) {
+        long next = 0;
+        long previous = 0;
+        boolean allZero = false;
+        for (int level = 0; level < length && !allZero; level++) {
+            next += values[length - 1];
+            previous += (level & 1) == 0 ? values[level] : -values[level];
+            allZero = true;
+            for (int i = length - 1; i > level; i--) {
+                values[i] -= values[i - 1];
+                allZero &= values[i] == 0;
+            }
         }
+        sums[0] += next;
+        sums[1] += previous;
     }
+
+    record Extrapolations(long next, long previous) {}
 }
@@ -0,0 +1,60 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fork-join pool for the work of one day. Counters reported on its threads are attributed to that day, and as solvers
+ * fork into the pool they run on, {@link #allocatedBytes()} includes the work a phase forks.
+ */
+final class DayPool extends ForkJoinPool {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final LongAdder endedThreadsAllocatedBytes = new LongAdder();
+
+    DayPool(int day) {
+        super(Runtime.getRuntime().availableProcessors(), pool -> new Worker(pool, day), null, false);
+    }
+
+    /**
+     * Bytes allocated so far by the threads of this pool, including those that have ended.
+     */
+    long allocatedBytes() {
+        long result = endedThreadsAllocatedBytes.sum();
+        for (Thread thread : threads) {
+            result += Math.max(THREAD_MX_BEAN.getThreadAllocatedBytes(thread.getId()), 0);
+        }
+        return result;
+    }
+
+    private static final class Worker extends ForkJoinWorkerThread {
+        private final int day;
+
+        Worker(ForkJoinPool pool, int day) {
+            super(pool);
+            this.day = day;
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            Instrumentation.setCurrentDay(day);
+            ((DayPool) getPool()).threads.add(this);
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            DayPool pool = (DayPool) getPool();
+            pool.threads.remove(this);
+            pool.endedThreadsAllocatedBytes.add(THREAD_MX_BEAN.getCurrentThreadAllocatedBytes());
+            super.onTermination(exception);
+        }
+    }
+}
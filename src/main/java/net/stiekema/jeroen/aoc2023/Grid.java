@@ -0,0 +1,277 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Rectangular grid of ASCII cells in one flat row-major {@code byte[]}, optionally surrounded by a halo of padding
+ * cells so the neighbours of a border cell can be read without bounds checks.
+ */
+public final class Grid {
+
+    public static final int NORTH = 0;
+    public static final int EAST = 1;
+    public static final int SOUTH = 2;
+    public static final int WEST = 3;
+    public static final int NORTH_EAST = 4;
+    public static final int SOUTH_EAST = 5;
+    public static final int SOUTH_WEST = 6;
+    public static final int NORTH_WEST = 7;
+
+    // the largest array the JVM reliably allocates, cells are indexed by int
+    static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    private static final int[] DX = {0, 1, 0, -1, 1, 1, -1, -1};
+    private static final int[] DY = {-1, 0, 1, 0, -1, 1, 1, -1};
+
+    private final byte[] cells;
+    private final int width;
+    private final int height;
+    private final int halo;
+    private final int stride;
+    private final int[] offsets = new int[DX.length];
+
+    private Grid(byte[] cells, int width, int height, int halo) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.halo = halo;
+        this.stride = width + 2 * halo;
+        for (int direction = 0; direction < offsets.length; direction++) {
+            offsets[direction] = DY[direction] * stride + DX[direction];
+        }
+    }
+
+    public static Grid parse(Input input, int halo, byte padding) {
+        Builder builder = new Builder(halo, padding);
+        input.forEachLine(builder::addLine);
+        return builder.build();
+    }
+
+    /**
+     * Wraps cells that are already laid out with the given halo, as written by {@link #copyOfCells()}.
+     */
+    public static Grid of(byte[] cells, int width, int height, int halo) {
+        long size = size(width, height, halo);
+        if (cells.length != size) {
+            throw new IllegalArgumentException("expected " + size + " cells");
+        }
+        return new Grid(cells, width, height, halo);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int halo() {
+        return halo;
+    }
+
+    /**
+     * Length of a padded row, which is also the index offset between two rows.
+     */
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Number of cells including the halo, the upper bound of an index.
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int index(int x, int y) {
+        return (y + halo) * stride + x + halo;
+    }
+
+    public int x(int index) {
+        return index % stride - halo;
+    }
+
+    public int y(int index) {
+        return index / stride - halo;
+    }
+
+    public byte get(int x, int y) {
+        return cells[index(x, y)];
+    }
+
+    public byte get(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Index offset to the neighbour in {@code direction}, one of the four straight directions followed by the four
+     * diagonals. Leaving the grid from a border cell is only safe with a halo.
+     */
+    public int offset(int direction) {
+        return offsets[direction];
+    }
+
+    public int neighbour(int index, int direction) {
+        return index + offsets[direction];
+    }
+
+    public static int opposite(int direction) {
+        return direction < 4 ? (direction + 2) & 3 : ((direction - 2) & 3) + 4;
+    }
+
+    /**
+     * Index of the first cell with {@code value}, or -1.
+     */
+    public int indexOf(byte value) {
+        for (int y = 0; y < height; y++) {
+            int rowStart = index(0, y);
+            for (int index = rowStart; index < rowStart + width; index++) {
+                if (cells[index] == value) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The x positions in row {@code y} that hold {@code value}.
+     */
+    public BitSet row(int y, byte value) {
+        BitSet result = new BitSet(width);
+        int rowStart = index(0, y);
+        for (int x = 0; x < width; x++) {
+            if (cells[rowStart + x] == value) {
+                result.set(x);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The y positions in column {@code x} that hold {@code value}.
+     */
+    public BitSet column(int x, byte value) {
+        BitSet result = new BitSet(height);
+        for (int y = 0, index = index(x, 0); y < height; y++, index += stride) {
+            if (cells[index] == value) {
+                result.set(y);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The rows that hold {@code value} at least once.
+     */
+    public BitSet rowsContaining(byte value) {
+        BitSet result = new BitSet(height);
+        BitSet columns = new BitSet(width);
+        scan(value, result, columns);
+        return result;
+    }
+
+    /**
+     * The columns that hold {@code value} at least once.
+     */
+    public BitSet columnsContaining(byte value) {
+        BitSet rows = new BitSet(height);
+        BitSet result = new BitSet(width);
+        scan(value, rows, result);
+        return result;
+    }
+
+    private void scan(byte value, BitSet rows, BitSet columns) {
+        for (int y = 0; y < height; y++) {
+            int rowStart = index(0, y);
+            for (int x = 0; x < width; x++) {
+                if (cells[rowStart + x] == value) {
+                    rows.set(y);
+                    columns.set(x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of cells of a grid with a halo, failing when it doesn't fit in one array.
+     */
+    private static long size(long width, long height, long halo) {
+        long size = (width + 2 * halo) * (height + 2 * halo);
+        if (size > MAX_CELLS) {
+            throw new IllegalArgumentException("a grid of " + width + " x " + height + " with halo " + halo
+                    + " has " + size + " cells, at most " + MAX_CELLS + " are supported");
+        }
+        return size;
+    }
+
+    public byte[] copyOfCells() {
+        return cells.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                sb.append((char) get(x, y));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Collects lines of equal length straight into the padded layout, the width is taken from the first line.
+     */
+    public static class Builder {
+        private final int halo;
+        private final byte padding;
+        private byte[] cells = new byte[0];
+        private int width = -1;
+        private int height;
+
+        public Builder(int halo, byte padding) {
+            this.halo = halo;
+            this.padding = padding;
+        }
+
+        public void addLine(Line line) {
+            if (width < 0) {
+                width = line.length();
+                cells = new byte[(int) size(width, 1, halo)];
+                Arrays.fill(cells, padding);
+            } else if (line.length() != width) {
+                throw new IllegalArgumentException("line " + line.lineNr() + " has length " + line.length() + ", expected " + width);
+            }
+            int stride = width + 2 * halo;
+            long needed = size(width, height + 1, halo);
+            if (needed > cells.length) {
+                int oldLength = cells.length;
+                cells = Arrays.copyOf(cells, (int) Math.max(needed, Math.min((long) oldLength * 2, MAX_CELLS)));
+                Arrays.fill(cells, oldLength, cells.length, padding);
+            }
+            int rowStart = (height + halo) * stride + halo;
+            for (int x = 0; x < width; x++) {
+                cells[rowStart + x] = line.byteAt(x);
+            }
+            height++;
+        }
+
+        public Grid build() {
+            int width = Math.max(this.width, 0);
+            int length = (int) size(width, height, halo);
+            byte[] result = cells.length == length ? cells : Arrays.copyOf(cells, length);
+            if (cells.length < length) {
+                Arrays.fill(result, cells.length, length, padding);
+            }
+            return new Grid(result, width, height, halo);
+        }
+    }
+}
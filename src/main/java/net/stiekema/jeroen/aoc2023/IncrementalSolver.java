@@ -0,0 +1,25 @@
+package net.stiekema.jeroen.aoc2023;
+
+/**
+ * Running answers of a day whose parts are folds over independent lines. Lines are pushed in one at a time, for example
+ * by a {@link LineFeed}, and both answers can be read at any time in between. A solver has one writer thread, the
+ * answers may be read from other threads.
+ */
+public interface IncrementalSolver {
+
+    /**
+     * Folds one more line into the answers. The line is only valid during the call.
+     */
+    void accept(Line line);
+
+    /**
+     * Tells the solver no more lines will come. Solvers that hold a line back until the line after it is seen settle
+     * it now; until then their answers leave it out.
+     */
+    default void finish() {
+    }
+
+    Object part1();
+
+    Object part2();
+}
@@ -0,0 +1,144 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Memory-mapped puzzle input. The file is mapped in chunks that end on a line boundary, so a single {@link Line} view
+ * can be moved over the raw ASCII bytes without decoding them or allocating a {@code String} per line.
+ */
+public final class Input {
+
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private final Path file;
+    private final List<MappedByteBuffer> chunks;
+    private final long size;
+
+    private Input(Path file, List<MappedByteBuffer> chunks, long size) {
+        this.file = file;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static Input of(URL resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("resource not found");
+        }
+        try {
+            return of(Paths.get(resource.toURI()));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("not a file resource: " + resource, e);
+        }
+    }
+
+    public static Input of(String resourceName) {
+        return of(Input.class.getResource(resourceName));
+    }
+
+    public static Input of(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return new Input(file, map(channel, size), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't map " + file, e);
+        }
+    }
+
+    private static List<MappedByteBuffer> map(FileChannel channel, long size) throws IOException {
+        List<MappedByteBuffer> result = new ArrayList<>();
+        long position = 0;
+        while (position < size) {
+            long length = Math.min(MAX_CHUNK_SIZE, size - position);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length < size) {
+                int lastNewLine = (int) length - 1;
+                while (lastNewLine >= 0 && chunk.get(lastNewLine) != '\n') {
+                    lastNewLine--;
+                }
+                if (lastNewLine < 0) {
+                    throw new IllegalStateException("line at offset " + position + " is longer than " + MAX_CHUNK_SIZE + " bytes");
+                }
+                length = lastNewLine + 1;
+                chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            result.add(chunk);
+            position += length;
+        }
+        return result;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Calls the consumer for every mapped chunk of the input. Every chunk but the last ends with a newline, so no line
+     * is split over two chunks.
+     */
+    public void forEachChunk(Consumer<ByteBuffer> consumer) {
+        for (MappedByteBuffer chunk : chunks) {
+            consumer.accept(chunk.duplicate());
+        }
+    }
+
+    /**
+     * SHA-256 of the content of the input, as lower case hex.
+     */
+    public String contentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (MappedByteBuffer chunk : chunks) {
+                digest.update(chunk.duplicate());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calls the consumer for every line of the input. The {@link Line} passed in is the same instance for every call
+     * and is only valid during that call.
+     */
+    public void forEachLine(Consumer<Line> consumer) {
+        Line line = new Line();
+        long lineNr = 0;
+        for (MappedByteBuffer chunk : chunks) {
+            int limit = chunk.limit();
+            int start = 0;
+            for (int i = 0; i < limit; i++) {
+                if (chunk.get(i) == '\n') {
+                    consumer.accept(line.set(chunk, start, endOfLine(chunk, start, i), lineNr++));
+                    start = i + 1;
+                }
+            }
+            if (start < limit) {
+                consumer.accept(line.set(chunk, start, endOfLine(chunk, start, limit), lineNr++));
+            }
+        }
+        Instrumentation.count(MetricsSink.Counter.LINES_PARSED, lineNr);
+    }
+
+    private static int endOfLine(MappedByteBuffer chunk, int start, int end) {
+        return end > start && chunk.get(end - 1) == '\r' ? end - 1 : end;
+    }
+}
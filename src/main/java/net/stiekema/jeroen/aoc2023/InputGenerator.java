@@ -0,0 +1,13 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a valid puzzle input of a requested size. The same size and seed always give the same input.
+ */
+@FunctionalInterface
+public interface InputGenerator {
+
+    void generate(long size, long seed, Writer out) throws IOException;
+}
@@ -0,0 +1,498 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generators of valid puzzle inputs of any size, to show how the solvers scale beyond the bundled inputs.
+ * <p>
+ * Usage: {@code InputGenerators <day> <size> <seed> <file>}. What {@code size} means depends on the day:
+ * <ul>
+ *     <li>days 1, 2, 4, 7 and 9: the number of lines</li>
+ *     <li>days 3, 10 and 11: the width and height of the grid, at most {@link #MAX_GRID_SIZE} so that a {@link Grid}
+ *     with a halo can hold it</li>
+ *     <li>day 5: the total number of seeds in the seed ranges</li>
+ *     <li>day 6: the number of races, at most 4 so that part 2 still fits in a {@code long}</li>
+ *     <li>day 8: the number of nodes in the network</li>
+ * </ul>
+ */
+public final class InputGenerators {
+
+    /**
+     * The largest grid size whose cells, with a halo of one, fit in the single array of a {@link Grid}.
+     */
+    public static final int MAX_GRID_SIZE = (int) Math.sqrt(Grid.MAX_CELLS) - 2;
+
+    private static final String[] NUMBER_WORDS = {"one", "two", "three", "four", "five", "six", "seven", "eight", "nine"};
+    private static final String[] COLORS = {"red", "green", "blue"};
+    private static final char[] SYMBOLS = "*#+$/@=%-&".toCharArray();
+    private static final char[] CARDS = "23456789TJQKA".toCharArray();
+    private static final char[] PIPES = "|-LJ7F......".toCharArray();
+    private static final String[] ALMANAC_CATEGORIES = {"seed", "soil", "fertilizer", "water", "light", "temperature", "humidity", "location"};
+
+    private InputGenerators() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("usage: InputGenerators <day> <size> <seed> <file>");
+            System.exit(1);
+        }
+        int day = Integer.parseInt(args[0]);
+        long size = Long.parseLong(args[1]);
+        long seed = Long.parseLong(args[2]);
+        Path file = Paths.get(args[3]);
+        write(day, size, seed, file);
+    }
+
+    public static void write(int day, long size, long seed, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            forDay(day).generate(size, seed, out);
+        }
+    }
+
+    public static InputGenerator forDay(int day) {
+        return switch (day) {
+            case 1 -> InputGenerators::day1;
+            case 2 -> InputGenerators::day2;
+            case 3 -> InputGenerators::day3;
+            case 4 -> InputGenerators::day4;
+            case 5 -> InputGenerators::day5;
+            case 6 -> InputGenerators::day6;
+            case 7 -> InputGenerators::day7;
+            case 8 -> InputGenerators::day8;
+            case 9 -> InputGenerators::day9;
+            case 10 -> InputGenerators::day10;
+            case 11 -> InputGenerators::day11;
+            default -> throw new IllegalArgumentException("no generator for day " + day);
+        };
+    }
+
+    private static void day1(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder line = new StringBuilder();
+        for (long i = 0; i < size; i++) {
+            line.setLength(0);
+            int length = random.nextInt(4, 40);
+            while (line.length() < length) {
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    line.append(NUMBER_WORDS[random.nextInt(NUMBER_WORDS.length)]);
+                } else if (kind == 1) {
+                    line.append((char) ('1' + random.nextInt(9)));
+                } else {
+                    line.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            line.insert(random.nextInt(line.length() + 1), (char) ('1' + random.nextInt(9)));
+            out.append(line).append('\n');
+        }
+    }
+
+    private static void day2(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder line = new StringBuilder();
+        for (long id = 1; id <= size; id++) {
+            line.setLength(0);
+            line.append("Game ").append(id).append(':');
+            int sets = random.nextInt(1, 7);
+            for (int set = 0; set < sets; set++) {
+                if (set > 0) line.append(';');
+                int colors = random.nextInt(1, 8);
+                boolean first = true;
+                for (int color = 0; color < COLORS.length; color++) {
+                    if ((colors & (1 << color)) != 0) {
+                        line.append(first ? " " : ", ").append(random.nextInt(1, 21)).append(' ').append(COLORS[color]);
+                        first = false;
+                    }
+                }
+            }
+            out.append(line).append('\n');
+        }
+    }
+
+    private static void day3(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = gridSize(size);
+        char[] row = new char[width];
+        for (long y = 0; y < size; y++) {
+            int x = 0;
+            while (x < width) {
+                int kind = random.nextInt(100);
+                if (kind < 10 && x + 3 < width) {
+                    int digits = random.nextInt(1, 4);
+                    row[x++] = (char) ('1' + random.nextInt(9));
+                    for (int i = 1; i < digits; i++) {
+                        row[x++] = (char) ('0' + random.nextInt(10));
+                    }
+                    row[x++] = '.';
+                } else if (kind < 14) {
+                    row[x++] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+                } else {
+                    row[x++] = '.';
+                }
+            }
+            out.write(row);
+            out.write('\n');
+        }
+    }
+
+    private static int gridSize(long size) {
+        if (size > MAX_GRID_SIZE) {
+            throw new IllegalArgumentException("a grid of " + size + " x " + size + " doesn't fit in a Grid, at most "
+                    + MAX_GRID_SIZE + " is supported");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Most cards win nothing and the mean number of matches stays below one, so the number of copies stays linear
+     * in the number of cards.
+     */
+    private static void day4(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] pool = new int[99];
+        int[] numbers = new int[10];
+        int idWidth = Long.toString(size).length();
+        StringBuilder line = new StringBuilder();
+        for (long id = 1; id <= size; id++) {
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = i + 1;
+            }
+            shuffle(pool, 35, random);
+            int matches = (int) Math.min(cardMatches(random), size - id);
+            System.arraycopy(pool, 0, numbers, 0, matches);
+            System.arraycopy(pool, 25, numbers, matches, numbers.length - matches);
+            shuffle(numbers, numbers.length, random);
+
+            line.setLength(0);
+            line.append("Card ").append(" ".repeat(idWidth - Long.toString(id).length())).append(id).append(':');
+            for (int number : numbers) {
+                appendPadded(line.append(' '), number);
+            }
+            line.append(" |");
+            for (int i = 0; i < 25; i++) {
+                appendPadded(line.append(' '), pool[i]);
+            }
+            out.append(line).append('\n');
+        }
+    }
+
+    private static int cardMatches(SplittableRandom random) {
+        int p = random.nextInt(100);
+        if (p < 60) return 0;
+        if (p < 85) return 1;
+        if (p < 93) return 2;
+        if (p < 97) return 4;
+        return 10;
+    }
+
+    /**
+     * Every map is a bijection: the range below a random upper bound is cut into pieces which are laid out again in a
+     * shuffled order, everything above the bound maps to itself.
+     */
+    private static void day5(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long universe = 1L << 32;
+        int ranges = 10;
+        long[] lengths = new long[ranges];
+        long remaining = Math.max(size, ranges);
+        for (int i = 0; i < ranges - 1; i++) {
+            lengths[i] = Math.max(1, remaining / (ranges - i) + random.nextLong(-remaining / (ranges * 2L + 1), remaining / (ranges * 2L + 1) + 1));
+            remaining -= lengths[i];
+        }
+        lengths[ranges - 1] = Math.max(1, remaining);
+
+        out.write("seeds:");
+        for (long length : lengths) {
+            out.append(' ').append(Long.toString(random.nextLong(universe - length))).append(' ').append(Long.toString(length));
+        }
+        out.write('\n');
+
+        for (int map = 0; map + 1 < ALMANAC_CATEGORIES.length; map++) {
+            out.append('\n').append(ALMANAC_CATEGORIES[map]).append("-to-").append(ALMANAC_CATEGORIES[map + 1]).append(" map:\n");
+            int entries = random.nextInt(20, 50);
+            long covered = universe - random.nextLong(universe / 16);
+            long[] cuts = new long[entries + 1];
+            for (int i = 1; i < entries; i++) {
+                cuts[i] = random.nextLong(1, covered);
+            }
+            cuts[entries] = covered;
+            Arrays.sort(cuts);
+            int[] order = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                order[i] = i;
+            }
+            shuffle(order, entries, random);
+            long destination = 0;
+            for (int piece : order) {
+                long length = cuts[piece + 1] - cuts[piece];
+                if (length > 0) {
+                    out.append(Long.toString(destination)).append(' ').append(Long.toString(cuts[piece])).append(' ').append(Long.toString(length)).append('\n');
+                }
+                destination += length;
+            }
+        }
+    }
+
+    private static void day6(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int races = (int) Math.max(1, Math.min(size, 4));
+        long[] times = new long[races];
+        long[] distances = new long[races];
+        for (int i = 0; i < races; i++) {
+            times[i] = random.nextLong(10, 100);
+            long best = (times[i] / 2) * (times[i] - times[i] / 2);
+            distances[i] = random.nextLong(best / 2, best);
+        }
+        out.write("Time:    ");
+        for (long time : times) {
+            out.append(String.format(" %6d", time));
+        }
+        out.write("\nDistance:");
+        for (long distance : distances) {
+            out.append(String.format(" %6d", distance));
+        }
+        out.write('\n');
+    }
+
+    private static void day7(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        char[] hand = new char[5];
+        for (long i = 0; i < size; i++) {
+            for (int card = 0; card < hand.length; card++) {
+                hand[card] = CARDS[random.nextInt(CARDS.length)];
+            }
+            out.write(hand);
+            out.append(' ').append(Integer.toString(random.nextInt(1, 1001))).append('\n');
+        }
+    }
+
+    /**
+     * Every ghost walks a ring whatever the instructions are. The periods are small primes, so part 2 fits in a long.
+     */
+    private static void day8(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int instructions = 281;
+        for (int i = 0; i < instructions; i++) {
+            out.write(random.nextBoolean() ? 'L' : 'R');
+        }
+        out.write("\n\n");
+
+        long[] periods = new long[5];
+        long period = nextPrime(Math.min(281, Math.max(3, size / 40)));
+        for (int ghost = 1; ghost < periods.length; ghost++) {
+            periods[ghost] = period;
+            period = nextPrime(period + 1);
+        }
+        periods[0] = Math.max(2, size / 2 - Arrays.stream(periods).sum());
+
+        int prefixLength = 2;
+        while (24 * Math.pow(26, prefixLength) < size) {
+            prefixLength++;
+        }
+        long nextId = 0;
+        for (int ghost = 0; ghost < periods.length; ghost++) {
+            String start = ghost == 0 ? "AAA" : base26(ghost, prefixLength) + 'A';
+            String finish = ghost == 0 ? "ZZZ" : base26(ghost, prefixLength) + 'Z';
+            long firstId = nextId;
+            writeNode(out, start, nodeName(firstId, prefixLength), nodeName(firstId + 1, prefixLength));
+            writeNode(out, finish, nodeName(firstId, prefixLength), nodeName(firstId + 1, prefixLength));
+            for (long position = 1; position < periods[ghost]; position++) {
+                boolean last = position == periods[ghost] - 1;
+                for (int copy = 0; copy < 2; copy++) {
+                    String name = nodeName(nextId++, prefixLength);
+                    if (last) {
+                        writeNode(out, name, finish, finish);
+                    } else {
+                        writeNode(out, name, nodeName(nextId + 1 - copy, prefixLength), nodeName(nextId + 2 - copy, prefixLength));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeNode(Writer out, String name, String left, String right) throws IOException {
+        out.append(name).append(" = (").append(left).append(", ").append(right).append(")\n");
+    }
+
+    /**
+     * Names of nodes that are neither a start nor a finish never end with an A or a Z.
+     */
+    private static String nodeName(long id, int prefixLength) {
+        return base26(id / 24, prefixLength) + (char) ('B' + id % 24);
+    }
+
+    private static String base26(long value, int length) {
+        char[] result = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            result[i] = (char) ('A' + value % 26);
+            value /= 26;
+        }
+        return new String(result);
+    }
+
+    private static void day9(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int length = 21;
+        long[] values = new long[length];
+        StringBuilder line = new StringBuilder();
+        for (long i = 0; i < size; i++) {
+            int degree = random.nextInt(7);
+            Arrays.fill(values, random.nextLong(-5, 6));
+            for (int level = degree - 1; level >= 0; level--) {
+                long value = random.nextLong(-20, 21);
+                for (int k = 0; k < length; k++) {
+                    long difference = values[k];
+                    values[k] = value;
+                    value += difference;
+                }
+            }
+            line.setLength(0);
+            for (int k = 0; k < length; k++) {
+                if (k > 0) line.append(' ');
+                line.append(values[k]);
+            }
+            out.append(line).append('\n');
+        }
+    }
+
+    /**
+     * The loop is a comb of a straight top edge and a bottom edge of random levels, drawn row by row.
+     */
+    private static void day10(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = gridSize(Math.max(5, size));
+        int height = width;
+
+        int[] columns = new int[width];
+        int boundaries = 1;
+        while (columns[boundaries - 1] < width - 1) {
+            columns[boundaries] = Math.min(width - 1, columns[boundaries - 1] + random.nextInt(1, 2 + Math.max(1, width / 16)));
+            boundaries++;
+        }
+        columns = Arrays.copyOf(columns, boundaries);
+        int[] levels = new int[boundaries - 1];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = random.nextInt(1, height);
+            if (i > 0 && levels[i] == levels[i - 1]) {
+                levels[i] = levels[i] == height - 1 ? levels[i] - 1 : levels[i] + 1;
+            }
+        }
+        int start = random.nextInt(1, width - 1);
+
+        char[] row = new char[width];
+        boolean[] onLoop = new boolean[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = PIPES[random.nextInt(PIPES.length)];
+                onLoop[x] = false;
+            }
+            if (y == 0) {
+                Arrays.fill(row, '-');
+                Arrays.fill(onLoop, true);
+                row[0] = 'F';
+                row[width - 1] = '7';
+                row[start] = 'S';
+            }
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i] == y) {
+                    for (int x = columns[i] + 1; x < columns[i + 1]; x++) {
+                        row[x] = '-';
+                        onLoop[x] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < columns.length; i++) {
+                int from = i == 0 ? 0 : levels[i - 1];
+                int to = i == levels.length ? 0 : levels[i];
+                char pipe = verticalPipe(from, to, y, i == 0, i == levels.length);
+                if (pipe != 0) {
+                    row[columns[i]] = pipe;
+                    onLoop[columns[i]] = true;
+                }
+            }
+            if (y == 1 && !onLoop[start]) {
+                row[start] = '.';
+            }
+            out.write(row);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * The pipe on row {@code y} of the vertical wall between the bottom edge at level {@code from} on its left and
+     * level {@code to} on its right, or 0 if the wall doesn't cross that row. The outer walls run up to the top edge.
+     */
+    private static char verticalPipe(int from, int to, int y, boolean leftWall, boolean rightWall) {
+        if (leftWall) {
+            return y > 0 && y < to ? '|' : y == to && y > 0 ? 'L' : 0;
+        }
+        if (rightWall) {
+            return y > 0 && y < from ? '|' : y == from && y > 0 ? 'J' : 0;
+        }
+        if (y > Math.min(from, to) && y < Math.max(from, to)) {
+            return '|';
+        } else if (y == from) {
+            return from < to ? '7' : 'J';
+        } else if (y == to) {
+            return from < to ? 'L' : 'F';
+        }
+        return 0;
+    }
+
+    private static void day11(long size, long seed, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = gridSize(size);
+        boolean[] emptyColumns = new boolean[width];
+        for (int x = 0; x < width; x++) {
+            emptyColumns[x] = random.nextInt(100) < 3;
+        }
+        char[] row = new char[width];
+        for (long y = 0; y < size; y++) {
+            boolean emptyRow = random.nextInt(100) < 3;
+            for (int x = 0; x < width; x++) {
+                row[x] = !emptyRow && !emptyColumns[x] && random.nextInt(100) < 2 ? '#' : '.';
+            }
+            out.write(row);
+            out.write('\n');
+        }
+    }
+
+    private static void shuffle(int[] values, int count, SplittableRandom random) {
+        for (int i = 0; i < count; i++) {
+            int j = random.nextInt(i, values.length);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static void appendPadded(StringBuilder line, int number) {
+        if (number < 10) line.append(' ');
+        line.append(number);
+    }
+
+    private static long nextPrime(long value) {
+        long candidate = Math.max(2, value);
+        while (!isPrime(candidate)) {
+            candidate++;
+        }
+        return candidate;
+    }
+
+    private static boolean isPrime(long value) {
+        for (long divisor = 2; divisor * divisor <= value; divisor++) {
+            if (value % divisor == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+package net.stiekema.jeroen.aoc2023;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * JDK Flight Recorder events for solver phases and batches of work, and counters passed on to a {@link MetricsSink}.
+ * Counters should be reported per batch rather than per iteration. They are attributed to the day of the phase running
+ * on the reporting thread, or on the threads of a {@link DayPool} to the day of the pool.
+ */
+public final class Instrumentation {
+
+    private static final ThreadLocal<Integer> CURRENT_DAY = ThreadLocal.withInitial(() -> 0);
+    private static volatile MetricsSink sink = loadSink();
+
+    private Instrumentation() {
+    }
+
+    private static MetricsSink loadSink() {
+        String className = System.getProperty("aoc2023.metrics");
+        if (className != null) {
+            try {
+                return (MetricsSink) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("can't create metrics sink " + className, e);
+            }
+        }
+        return ServiceLoader.load(MetricsSink.class).findFirst().orElse(null);
+    }
+
+    public static MetricsSink getSink() {
+        return sink;
+    }
+
+    public static void setSink(MetricsSink metricsSink) {
+        sink = metricsSink;
+    }
+
+    /**
+     * Runs one phase of a solver, recording it as a {@link PhaseEvent}. Counters reported on this thread while the
+     * phase runs are attributed to {@code day}.
+     */
+    public static <T> T phase(int day, String phase, Supplier<T> body) {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        int previousDay = CURRENT_DAY.get();
+        CURRENT_DAY.set(day);
+        try {
+            return body.get();
+        } finally {
+            CURRENT_DAY.set(previousDay);
+            event.end();
+            if (event.shouldCommit()) {
+                event.day = day;
+                event.phase = phase;
+                event.commit();
+            }
+        }
+    }
+
+    static void setCurrentDay(int day) {
+        CURRENT_DAY.set(day);
+    }
+
+    /**
+     * Starts a batch of work inside a phase, finish it with {@link #endBatch(BatchEvent, long)}.
+     */
+    public static BatchEvent beginBatch(String batch) {
+        BatchEvent event = new BatchEvent();
+        event.batch = batch;
+        event.begin();
+        return event;
+    }
+
+    public static void endBatch(BatchEvent event, long items) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.day = CURRENT_DAY.get();
+            event.items = items;
+            event.commit();
+        }
+    }
+
+    public static void count(MetricsSink.Counter counter, long amount) {
+        MetricsSink metricsSink = sink;
+        if (metricsSink != null && amount != 0) {
+            metricsSink.add(CURRENT_DAY.get(), counter, amount);
+        }
+    }
+
+    @Name("aoc2023.Phase")
+    @Label("Solver Phase")
+    @Category("Advent of Code")
+    @Description("Parsing the input of a day, or solving one of its parts")
+    public static class PhaseEvent extends Event {
+        @Label("Day")
+        int day;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("aoc2023.Batch")
+    @Label("Solver Batch")
+    @Category("Advent of Code")
+    @Description("A batch of work inside a solver phase, such as one seed range or one ghost walk")
+    public static class BatchEvent extends Event {
+        @Label("Day")
+        int day;
+
+        @Label("Batch")
+        String batch;
+
+        @Label("Items")
+        long items;
+    }
+
+    /**
+     * Sink that keeps a running total per day and counter.
+     */
+    public static class CountingMetricsSink implements MetricsSink {
+        private static final int MAX_DAY = 25;
+
+        private final LongAdder[][] totals = new LongAdder[MAX_DAY + 1][MetricsSink.Counter.values().length];
+
+        public CountingMetricsSink() {
+            for (LongAdder[] day : totals) {
+                for (int i = 0; i < day.length; i++) {
+                    day[i] = new LongAdder();
+                }
+            }
+        }
+
+        @Override
+        public void add(int day, MetricsSink.Counter counter, long amount) {
+            totals[day][counter.ordinal()].add(amount);
+        }
+
+        public long get(int day, MetricsSink.Counter counter) {
+            return totals[day][counter.ordinal()].sum();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view over one line of ASCII bytes in an {@link Input}, with a cursor to read fields and numbers straight
+ * from the bytes.
+ */
+public final class Line implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int position;
+    private long lineNr;
+    private Line field;
+
+    Line() {
+    }
+
+    Line set(ByteBuffer buffer, int start, int end, long lineNr) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.position = 0;
+        this.lineNr = lineNr;
+        return this;
+    }
+
+    /**
+     * Zero based number of this line within the input.
+     */
+    public long lineNr() {
+        return lineNr;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) byteAt(index);
+    }
+
+    public byte byteAt(int index) {
+        return buffer.get(start + index);
+    }
+
+    public boolean isBlank() {
+        for (int i = start; i < end; i++) {
+            if (!isWhitespace(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean startsWith(CharSequence prefix) {
+        return regionMatches(0, prefix);
+    }
+
+    public boolean regionMatches(int index, CharSequence other) {
+        if (index < 0 || index + other.length() > length()) {
+            return false;
+        }
+        for (int i = 0; i < other.length(); i++) {
+            if (buffer.get(start + index + i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int indexOf(char c) {
+        return indexOf(c, 0);
+    }
+
+    public int indexOf(char c, int fromIndex) {
+        for (int i = start + Math.max(fromIndex, 0); i < end; i++) {
+            if (buffer.get(i) == c) {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+
+    public char[] toCharArray() {
+        char[] result = new char[length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = charAt(i);
+        }
+        return result;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public Line position(int position) {
+        this.position = position;
+        return this;
+    }
+
+    public boolean hasRemaining() {
+        return position < length();
+    }
+
+    public Line skipWhitespace() {
+        while (position < length() && isWhitespace(byteAt(position))) {
+            position++;
+        }
+        return this;
+    }
+
+    /**
+     * Moves the cursor just past the next occurrence of {@code c}, or to the end of the line if there is none.
+     */
+    public Line skipPast(char c) {
+        int index = indexOf(c, position);
+        position = index < 0 ? length() : index + 1;
+        return this;
+    }
+
+    public boolean hasNextNumber() {
+        for (int i = position; i < length(); i++) {
+            if (isDigit(byteAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int nextInt() {
+        return Math.toIntExact(nextLong());
+    }
+
+    /**
+     * Skips everything up to the next (optionally negative) number and parses it, leaving the cursor right after it.
+     */
+    public long nextLong() {
+        while (position < length() && !isDigit(byteAt(position))) {
+            position++;
+        }
+        if (position == length()) {
+            throw new IllegalStateException("no number found in line " + lineNr + " from position " + position);
+        }
+        boolean negative = position > 0 && byteAt(position - 1) == '-';
+        long result = 0;
+        while (position < length() && isDigit(byteAt(position))) {
+            result = result * 10 + (byteAt(position++) - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Returns a view on the text from the cursor up to the next {@code separator} (or the end of the line) and moves
+     * the cursor past the separator. The returned view is reused by the next call on this line.
+     */
+    public Line nextField(char separator) {
+        int index = indexOf(separator, position);
+        int fieldEnd = index < 0 ? length() : index;
+        if (field == null) {
+            field = new Line();
+        }
+        field.set(buffer, start + position, start + fieldEnd, lineNr);
+        position = index < 0 ? length() : index + 1;
+        return field;
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return toString().substring(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return new String(toCharArray());
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,161 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+import java.util.function.Consumer;
+
+/**
+ * Splits a stream of bytes that arrives piece by piece into {@link Line}s, for inputs that are a continuous feed rather
+ * than a finished file. An unfinished last line is kept until its newline arrives.
+ * <p>
+ * Usage: {@code LineFeed <day> [<file> [--follow]]} reads the file, or stdin without one, into the
+ * {@link IncrementalSolver} of that day and prints the running answers. With {@code --follow} the file is watched for
+ * appended lines and the answers are printed whenever the feed catches up; as the file may still grow, those answers
+ * are the ones before {@link IncrementalSolver#finish()}.
+ */
+public final class LineFeed {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final Consumer<Line> consumer;
+    private final Line line = new Line();
+    private byte[] buffer = new byte[64 * 1024];
+    private ByteBuffer view = ByteBuffer.wrap(buffer);
+    private int filled;
+    private long lineNr;
+
+    public LineFeed(Consumer<Line> consumer) {
+        this.consumer = consumer;
+    }
+
+    public void push(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        push(bytes, 0, bytes.length);
+    }
+
+    public void push(byte[] bytes, int offset, int length) {
+        if (filled + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, filled + length));
+            view = ByteBuffer.wrap(buffer);
+        }
+        System.arraycopy(bytes, offset, buffer, filled, length);
+        long firstLineNr = lineNr;
+        int lineStart = 0;
+        int end = filled + length;
+        for (int i = filled; i < end; i++) {
+            if (buffer[i] == '\n') {
+                accept(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        System.arraycopy(buffer, lineStart, buffer, 0, end - lineStart);
+        filled = end - lineStart;
+        Instrumentation.count(MetricsSink.Counter.LINES_PARSED, lineNr - firstLineNr);
+    }
+
+    /**
+     * Passes on the last line if it didn't end with a newline, call this when the feed is closed.
+     */
+    public void finish() {
+        if (filled > 0) {
+            accept(0, filled);
+            filled = 0;
+            Instrumentation.count(MetricsSink.Counter.LINES_PARSED, 1);
+        }
+    }
+
+    public long lineCount() {
+        return lineNr;
+    }
+
+    private void accept(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        consumer.accept(line.set(view, start, end, lineNr++));
+    }
+
+    /**
+     * Feeds everything up to the end of {@code in}.
+     */
+    public void read(InputStream in) throws IOException {
+        byte[] bytes = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(bytes)) >= 0) {
+            push(bytes, 0, read);
+        }
+        finish();
+    }
+
+    /**
+     * Feeds {@code file} and keeps feeding lines appended to it until the thread is interrupted. {@code onIdle} runs
+     * whenever the feed has caught up with the end of the file.
+     */
+    public void follow(Path file, Runnable onIdle) throws IOException {
+        byte[] bytes = new byte[64 * 1024];
+        ByteBuffer chunk = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (channel.size() < channel.position()) {
+                    throw new IllegalStateException(file + " was truncated");
+                }
+                chunk.clear();
+                int read = channel.read(chunk);
+                if (read > 0) {
+                    push(bytes, 0, read);
+                } else {
+                    onIdle.run();
+                    try {
+                        Thread.sleep(POLL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int day = Integer.parseInt(args[0]);
+        IncrementalSolver solver = ServiceLoader.load(Solver.class).stream()
+                .map(ServiceLoader.Provider::get)
+                .filter(t -> t.day() == day)
+                .findFirst()
+                .map(Solver::incremental)
+                .orElse(null);
+        if (solver == null) {
+            throw new IllegalArgumentException("day " + day + " has no incremental solver");
+        }
+        LineFeed feed = new LineFeed(solver::accept);
+        Runnable report = () -> System.out.printf("lines: %d  part 1: %s  part 2: %s%n",
+                feed.lineCount(), solver.part1(), solver.part2());
+        if (args.length == 1) {
+            feed.read(System.in);
+            solver.finish();
+            report.run();
+        } else if (args.length > 2 && args[2].equals("--follow")) {
+            long[] reported = {-1};
+            feed.follow(Paths.get(args[1]), () -> {
+                if (feed.lineCount() != reported[0]) {
+                    reported[0] = feed.lineCount();
+                    report.run();
+                }
+            });
+        } else {
+            try (InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+                feed.read(in);
+            }
+            solver.finish();
+            report.run();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.stiekema.jeroen.aoc2023;
+
+/**
+ * Receives the counters reported through {@link Instrumentation}. An implementation is picked up from the
+ * {@code aoc2023.metrics} system property (a class name) or else through {@link java.util.ServiceLoader}.
+ * Implementations must be thread safe, solvers report from several threads at once.
+ */
+public interface MetricsSink {
+
+    enum Counter {
+        LINES_PARSED,
+        LOOKUPS,
+        CACHE_HITS
+    }
+
+    /**
+     * @param day the day the counter belongs to, or 0 when it is reported outside of a solver phase
+     */
+    void add(int day, Counter counter, long amount);
+}
@@ -0,0 +1,181 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed models, stored per day under the SHA-256 of the input and kept under {@code maxBytes} by
+ * deleting the least recently used snapshots.
+ */
+public final class ModelCache {
+
+    private static final int MAGIC = 0x414f434d; // "AOCM"
+    private static final String SUFFIX = ".model";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ModelCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the model of {@code input}, from the cache when there is a snapshot of it, otherwise parsed by the
+     * solver and stored. Solvers without a codec are always parsed.
+     */
+    public <M> M load(Solver<M> solver, Input input) {
+        ModelCodec<M> codec = solver.codec();
+        if (codec == null) {
+            return solver.parse(input);
+        }
+        Path file = directory.resolve("day" + solver.day() + "-" + input.contentHash() + SUFFIX);
+        M model = read(file, solver.day(), codec);
+        if (model != null) {
+            Instrumentation.count(MetricsSink.Counter.CACHE_HITS, 1);
+            return model;
+        }
+        model = solver.parse(input);
+        write(file, solver.day(), codec, model);
+        evict(file);
+        return model;
+    }
+
+    private static <M> M read(Path file, int day, ModelCodec<M> codec) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.remaining() < 12
+                    || snapshot.getInt() != MAGIC
+                    || snapshot.getInt() != day
+                    || snapshot.getInt() != codec.version()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            M model = codec.read(snapshot);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return model;
+        } catch (IOException | RuntimeException e) {
+            // a truncated or otherwise unreadable snapshot is just a miss
+            return null;
+        }
+    }
+
+    private static <M> void write(Path file, int day, ModelCodec<M> codec, M model) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(day);
+                out.writeInt(codec.version());
+                codec.write(model, out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't write model snapshot " + file, e);
+        }
+    }
+
+    private void evict(Path keep) {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(t -> t.getFileName().toString().endsWith(SUFFIX)).forEach(snapshots::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't list " + directory, e);
+        }
+        snapshots.sort(Comparator.comparing(ModelCache::lastModified));
+        long totalBytes = snapshots.stream().mapToLong(ModelCache::size).sum();
+        for (Path snapshot : snapshots) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            if (!snapshot.equals(keep)) {
+                totalBytes -= size(snapshot);
+                try {
+                    Files.deleteIfExists(snapshot);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("can't evict " + snapshot, e);
+                }
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads an array written as its length followed by the values.
+     */
+    static long[] readLongs(ByteBuffer snapshot) {
+        long[] result = new long[snapshot.getInt()];
+        snapshot.asLongBuffer().get(result);
+        snapshot.position(snapshot.position() + result.length * Long.BYTES);
+        return result;
+    }
+
+    static void writeLongs(long[] values, DataOutputStream out) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer snapshot) {
+        int[] result = new int[snapshot.getInt()];
+        snapshot.asIntBuffer().get(result);
+        snapshot.position(snapshot.position() + result.length * Integer.BYTES);
+        return result;
+    }
+
+    static void writeInts(int[] values, DataOutputStream out) throws IOException {
+        writeInts(values, values.length, out);
+    }
+
+    static void writeInts(int[] values, int length, DataOutputStream out) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    static byte[] readBytes(ByteBuffer snapshot) {
+        byte[] result = new byte[snapshot.getInt()];
+        snapshot.get(result);
+        return result;
+    }
+
+    static void writeBytes(byte[] values, int length, DataOutputStream out) throws IOException {
+        out.writeInt(length);
+        out.write(values, 0, length);
+    }
+}
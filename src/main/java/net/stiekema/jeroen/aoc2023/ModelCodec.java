@@ -0,0 +1,24 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a parsed model to a compact binary snapshot and reads it back, so {@link ModelCache} can skip the text parse
+ * on later runs. Numbers are written big-endian, which is what both {@link DataOutputStream} and a fresh
+ * {@link ByteBuffer} use.
+ */
+public interface ModelCodec<M> {
+
+    /**
+     * Version of the snapshot format. Snapshots written with another version are treated as a cache miss.
+     */
+    default int version() {
+        return 1;
+    }
+
+    void write(M model, DataOutputStream out) throws IOException;
+
+    M read(ByteBuffer snapshot);
+}
@@ -0,0 +1,160 @@
+package net.stiekema.jeroen.aoc2023;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Runs every {@link Solver} found by the {@link ServiceLoader} concurrently in one JVM and prints the wall time and
+ * allocated bytes of each phase, so a full regression sweep doesn't need a cold JVM per day. Every day runs on a
+ * {@link DayPool} of its own, so its counters and allocation include the work it forks and nothing of the other days.
+ * <p>
+ * Usage: {@code Runner [--inputs <dir>] [--cache <dir>] [--cache-size <MB>] [day ...]}, without days all solvers are
+ * run. With {@code --inputs} a day reads {@code <dir>/dayN.txt} instead of its bundled input when that file exists,
+ * for example one written by {@link InputGenerators}. With {@code --cache <dir>} the parsed models of days that have
+ * a {@link ModelCodec} are stored in a {@link ModelCache} of at most {@code --cache-size} MB (default 1024), so a
+ * repeat run skips parsing.
+ */
+public class Runner {
+
+    public static void main(String[] args) {
+        Path inputDirectory = null;
+        Path cacheDirectory = null;
+        long cacheSize = 1024;
+        Set<Integer> days = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--inputs")) {
+                inputDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--cache")) {
+                cacheDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--cache-size")) {
+                cacheSize = Long.parseLong(args[++i]);
+            } else {
+                days.add(Integer.parseInt(args[i]));
+            }
+        }
+        Path inputs = inputDirectory;
+        ModelCache cache = cacheDirectory == null ? null : new ModelCache(cacheDirectory, cacheSize * 1024 * 1024);
+        if (Instrumentation.getSink() == null) {
+            Instrumentation.setSink(new Instrumentation.CountingMetricsSink());
+        }
+        List<Solver<?>> solvers = ServiceLoader.load(Solver.class).stream()
+                .map(ServiceLoader.Provider::get)
+                .<Solver<?>>map(t -> t)
+                .filter(t -> days.isEmpty() || days.contains(t.day()))
+                .sorted(Comparator.comparingInt(Solver::day))
+                .toList();
+
+        long time = System.nanoTime();
+        List<DayPool> pools = solvers.stream()
+                .map(solver -> new DayPool(solver.day()))
+                .toList();
+        List<ForkJoinTask<Report>> tasks = IntStream.range(0, solvers.size())
+                .mapToObj(i -> pools.get(i).submit(() -> run(solvers.get(i), inputs, cache, pools.get(i))))
+                .toList();
+        List<Report> reports = tasks.stream()
+                .map(ForkJoinTask::join)
+                .toList();
+        pools.forEach(ForkJoinPool::shutdown);
+
+        printTable(reports);
+        if (Instrumentation.getSink() instanceof Instrumentation.CountingMetricsSink counters) {
+            printCounters(reports, counters);
+        }
+        System.out.printf("%ntotal wall time: %d ms%n", (System.nanoTime() - time) / 1_000_000);
+    }
+
+    private static <M> Report run(Solver<M> solver, Path inputDirectory, ModelCache cache, DayPool pool) {
+        Input input = openInput(solver, inputDirectory);
+        Phase<M> parse = measure(pool, solver.day(), "parse",
+                () -> cache == null ? solver.parse(input) : cache.load(solver, input));
+        if (parse.error() != null) {
+            return new Report(solver.day(), parse, null, null);
+        }
+        Phase<Object> part1 = measure(pool, solver.day(), "part1", () -> solver.part1(parse.result()));
+        Phase<Object> part2 = measure(pool, solver.day(), "part2", () -> solver.part2(parse.result()));
+        return new Report(solver.day(), parse, part1, part2);
+    }
+
+    private static Input openInput(Solver<?> solver, Path inputDirectory) {
+        if (inputDirectory != null) {
+            Path file = inputDirectory.resolve("day" + solver.day() + ".txt");
+            if (Files.exists(file)) {
+                return Input.of(file);
+            }
+        }
+        return Input.of(solver.inputResource());
+    }
+
+    private static <T> Phase<T> measure(DayPool pool, int day, String name, Supplier<T> phase) {
+        long allocatedBytes = pool.allocatedBytes();
+        long time = System.nanoTime();
+        T result = null;
+        Throwable error = null;
+        try {
+            result = Instrumentation.phase(day, name, phase);
+        } catch (RuntimeException | Error e) {
+            error = e;
+        }
+        return new Phase<>(result, error,
+                System.nanoTime() - time,
+                pool.allocatedBytes() - allocatedBytes);
+    }
+
+    private static void printTable(List<Report> reports) {
+        String format = "%-4s %10s %10s %10s %12s  %-20s %-20s%n";
+        System.out.printf(format, "day", "parse ms", "part1 ms", "part2 ms", "alloc MB", "part 1", "part 2");
+        for (Report report : reports) {
+            System.out.printf(format,
+                    report.day(),
+                    millis(report.parse()),
+                    millis(report.part1()),
+                    millis(report.part2()),
+                    String.format("%.1f", report.allocatedBytes() / (1024.0 * 1024.0)),
+                    answer(report.parse(), report.part1()),
+                    answer(report.parse(), report.part2()));
+        }
+    }
+
+    private static void printCounters(List<Report> reports, Instrumentation.CountingMetricsSink counters) {
+        String format = "%-4s %15s %15s %15s%n";
+        System.out.printf("%n" + format, "day", "lines parsed", "lookups", "cache hits");
+        for (Report report : reports) {
+            System.out.printf(format,
+                    report.day(),
+                    counters.get(report.day(), MetricsSink.Counter.LINES_PARSED),
+                    counters.get(report.day(), MetricsSink.Counter.LOOKUPS),
+                    counters.get(report.day(), MetricsSink.Counter.CACHE_HITS));
+        }
+    }
+
+    private static String millis(Phase<?> phase) {
+        return phase == null ? "-" : String.format("%.1f", phase.nanos() / 1_000_000.0);
+    }
+
+    private static String answer(Phase<?> parse, Phase<?> part) {
+        if (parse.error() != null) {
+            return "parse failed: " + parse.error();
+        }
+        return part.error() != null ? "failed: " + part.error() : String.valueOf(part.result());
+    }
+
+    private record Phase<T>(T result, Throwable error, long nanos, long allocatedBytes) {}
+
+    private record Report(int day, Phase<?> parse, Phase<?> part1, Phase<?> part2) {
+        long allocatedBytes() {
+            return parse.allocatedBytes()
+                    + (part1 == null ? 0 : part1.allocatedBytes())
+                    + (part2 == null ? 0 : part2.allocatedBytes());
+        }
+    }
+}
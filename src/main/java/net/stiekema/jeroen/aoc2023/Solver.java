@@ -0,0 +1,41 @@
+package net.stiekema.jeroen.aoc2023;
+
+/**
+ * A puzzle of one day, split in the phases the {@link Runner} measures: parsing the input into a model, and solving
+ * both parts from that model. Implementations are discovered through {@link java.util.ServiceLoader}, so they need a
+ * public no-arg constructor and an entry in {@code META-INF/services/net.stiekema.jeroen.aoc2023.Solver}.
+ *
+ * @param <M> the parsed model of the puzzle input
+ */
+public interface Solver<M> {
+
+    int day();
+
+    M parse(Input input);
+
+    Object part1(M model);
+
+    Object part2(M model);
+
+    /**
+     * Classpath resource with the puzzle input of this day.
+     */
+    default String inputResource() {
+        return "/day" + day() + ".txt";
+    }
+
+    /**
+     * Codec to store the parsed model in a {@link ModelCache}, or {@code null} when parsing is cheap enough that
+     * caching isn't worth it.
+     */
+    default ModelCodec<M> codec() {
+        return null;
+    }
+
+    /**
+     * A new {@link IncrementalSolver} for this day, or {@code null} when the answers can't be maintained line by line.
+     */
+    default IncrementalSolver incremental() {
+        return null;
+    }
+}
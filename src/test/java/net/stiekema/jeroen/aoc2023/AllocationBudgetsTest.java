@@ -0,0 +1,102 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails when a solver phase allocates more bytes per input line than its budget, so a hot path that was made
+ * allocation free can't quietly start allocating again. Every solver runs on a generated input of fixed size and seed,
+ * and the lowest of a few runs after warming up counts. Phases run on a {@link DayPool}, so what they fork is counted
+ * and what other threads allocate is not. Budgets are bytes per line, lower them when a day gets cheaper.
+ */
+class AllocationBudgetsTest {
+
+    private static final long SEED = 1;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 3;
+
+    private static final Map<Integer, Budget> BUDGETS = new TreeMap<>(Map.ofEntries(
+            Map.entry(1, new Budget(20_000, 16, 16, 16)),
+            Map.entry(2, new Budget(20_000, 64, 16, 16)),
+            Map.entry(3, new Budget(400, 2_400, 16, 16)),
+            Map.entry(4, new Budget(20_000, 96, 16, 16)),
+            Map.entry(5, new Budget(20_000, 512, 16, 16)),
+            Map.entry(6, new Budget(4, 600, 400, 320)),
+            Map.entry(7, new Budget(20_000, 160, 64_000, 76_000)),
+            Map.entry(8, new Budget(20_000, 128, 160, 160)),
+            Map.entry(9, new Budget(20_000, 16, 16, 16)),
+            Map.entry(10, new Budget(400, 2_400, 16, 16)),
+            Map.entry(11, new Budget(400, 2_200, 560, 560))
+    ));
+
+    @TempDir
+    Path directory;
+
+    @TestFactory
+    Stream<DynamicTest> everyPhaseStaysWithinItsBudget() {
+        return ServiceLoader.load(Solver.class).stream()
+                .<Solver<?>>map(ServiceLoader.Provider::get)
+                .filter(t -> BUDGETS.containsKey(t.day()))
+                .map(solver -> DynamicTest.dynamicTest("day " + solver.day(), () -> check(solver, BUDGETS.get(solver.day()))));
+    }
+
+    private <M> void check(Solver<M> solver, Budget budget) throws IOException {
+        Path file = directory.resolve("day" + solver.day() + ".txt");
+        InputGenerators.write(solver.day(), budget.size(), SEED, file);
+        Input input = Input.of(file);
+        long[] lines = {0};
+        input.forEachLine(line -> lines[0]++);
+        M model = solver.parse(input);
+        DayPool pool = new DayPool(solver.day());
+        double parse;
+        double part1;
+        double part2;
+        try {
+            parse = bytesPerLine(pool, () -> solver.parse(input), lines[0]);
+            part1 = bytesPerLine(pool, () -> solver.part1(model), lines[0]);
+            part2 = bytesPerLine(pool, () -> solver.part2(model), lines[0]);
+        } finally {
+            pool.shutdown();
+        }
+        assertAll(
+                () -> assertWithin("parse", parse, budget.parseBytesPerLine()),
+                () -> assertWithin("part1", part1, budget.part1BytesPerLine()),
+                () -> assertWithin("part2", part2, budget.part2BytesPerLine()));
+    }
+
+    private static void assertWithin(String phase, double bytesPerLine, long budget) {
+        assertTrue(bytesPerLine <= budget,
+                String.format("%s allocates %.1f bytes per line, budget is %d", phase, bytesPerLine, budget));
+    }
+
+    private static double bytesPerLine(DayPool pool, Supplier<?> phase, long lines) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            pool.invoke(ForkJoinTask.adapt(phase::get));
+        }
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long allocatedBytes = pool.allocatedBytes();
+            pool.invoke(ForkJoinTask.adapt(phase::get));
+            lowest = Math.min(lowest, pool.allocatedBytes() - allocatedBytes);
+        }
+        return (double) lowest / Math.max(lines, 1);
+    }
+
+    /**
+     * The generator size to measure with and the allowed bytes per line of every phase.
+     */
+    private record Budget(long size, long parseBytesPerLine, long part1BytesPerLine, long part2BytesPerLine) {}
+}
@@ -0,0 +1,106 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Day1Test {
+
+    private static final List<String> WORDS = List.of("zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scannerAndBatchesMatchNaiveScan() throws IOException {
+        for (long seed = 0; seed < 5; seed++) {
+            Path file = directory.resolve("day1-" + seed + ".txt");
+            InputGenerators.write(1, 2_000, seed, file);
+            List<String> lines = Files.readAllLines(file);
+            Input input = Input.of(file);
+
+            int part1 = lines.stream().mapToInt(line -> naive(line, false)).sum();
+            int part2 = lines.stream().mapToInt(line -> naive(line, true)).sum();
+            assertEquals(part1, Day1.calculate(input, Day1::calculateCalibrationValuePart1));
+            assertEquals(part2, Day1.calculate(input, Day1::calculateCalibrationValuePart2));
+            assertEquals(part1, Day1.calculatePart1Batch(input));
+            assertEquals(part1, Day1.calculatePart1BatchScalar(input));
+        }
+    }
+
+    @Test
+    void keepsOverlappingWords() throws IOException {
+        Input input = write("oneight\nxtwonex\n");
+
+        assertEquals(18 + 21, Day1.calculate(input, Day1::calculateCalibrationValuePart2));
+    }
+
+    @Test
+    void sumsDontOverflow() throws IOException {
+        int lines = 22_000_000;
+        byte[] text = new byte[2 * lines];
+        for (int i = 0; i < text.length; i += 2) {
+            text[i] = '9';
+            text[i + 1] = '\n';
+        }
+        Path file = Files.write(directory.resolve("nines.txt"), text);
+        Input input = Input.of(file);
+
+        long expected = 99L * lines;
+        assertEquals(expected, Day1.calculate(input, Day1::calculateCalibrationValuePart1));
+        assertEquals(expected, Day1.calculatePart1Batch(input));
+        assertEquals(expected, Day1.calculatePart1BatchScalar(input));
+        assertEquals(new Day1.CalibrationValues(expected, expected), Day1.calculateCalibrationValues(input));
+        Day1.Incremental incremental = new Day1.Incremental();
+        input.forEachLine(incremental::accept);
+        assertEquals(expected, incremental.part2());
+    }
+
+    @Test
+    void rejectsLineWithoutDigit() throws IOException {
+        Input input = write("a1b\nabc\n");
+
+        assertThrows(IllegalStateException.class, () -> Day1.calculate(input, Day1::calculateCalibrationValuePart1));
+        assertThrows(IllegalStateException.class, () -> Day1.calculatePart1Batch(input));
+        assertThrows(IllegalStateException.class, () -> Day1.calculatePart1BatchScalar(input));
+    }
+
+    private Input write(String text) throws IOException {
+        Path file = directory.resolve("input.txt");
+        Files.writeString(file, text);
+        return Input.of(file);
+    }
+
+    private static int naive(String line, boolean words) {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < line.length(); i++) {
+            int value = valueAt(line, i, words);
+            if (value >= 0) {
+                if (first < 0) first = value;
+                last = value;
+            }
+        }
+        return first * 10 + last;
+    }
+
+    private static int valueAt(String line, int index, boolean words) {
+        char c = line.charAt(index);
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        for (int value = 1; words && value < WORDS.size(); value++) {
+            if (line.startsWith(WORDS.get(value), index)) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,77 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Day2Test {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bagIndexMatchesLinearScan() throws IOException {
+        SplittableRandom random = new SplittableRandom(2);
+        for (long seed = 0; seed < 4; seed++) {
+            Path file = directory.resolve("day2-" + seed + ".txt");
+            InputGenerators.write(2, 3_000, seed, file);
+            Day2.Games games = Day2.parseGames(Input.of(file));
+            Day2.BagIndex index = Day2.BagIndex.of(games);
+
+            for (int i = 0; i < 500; i++) {
+                Day2.CubeHolder bag = new Day2.CubeHolder(random.nextInt(25), random.nextInt(25), random.nextInt(25));
+                assertEquals(Day2.calculatePossibleGames(games, bag), Day2.calculatePossibleGames(index, bag));
+            }
+        }
+    }
+
+    @Test
+    void bagIndexHandlesExtraColors() throws IOException {
+        Path file = directory.resolve("colors.txt");
+        Files.writeString(file, """
+                Game 1: 3 blue, 4 red; 1 red, 2 green, 6 blue
+                Game 2: 1 yellow, 2 green; 3 green, 4 blue, 1 red
+                Game 3: 8 green, 6 blue, 20 red; 5 yellow, 4 red
+                Game 4: 1 green, 3 red, 6 blue; 3 green, 6 red
+                Game 5: 6 red, 1 blue, 3 green; 2 blue, 1 red, 2 purple
+                """);
+        Day2.Games games = Day2.parseGames(Input.of(file));
+        Day2.BagIndex index = Day2.BagIndex.of(games);
+
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 500; i++) {
+            Day2.CubeHolder bag = new Day2.CubeHolder(Map.of(
+                    "red", random.nextInt(22),
+                    "green", random.nextInt(10),
+                    "blue", random.nextInt(8),
+                    "yellow", random.nextInt(7),
+                    "purple", random.nextInt(4)));
+            assertEquals(Day2.calculatePossibleGames(games, bag), Day2.calculatePossibleGames(index, bag));
+        }
+        assertEquals(1 + 4, Day2.calculatePossibleGames(index, new Day2.CubeHolder(12, 13, 14)));
+    }
+
+    @Test
+    void powersAndSumsDontOverflow() throws IOException {
+        Path file = directory.resolve("cubes.txt");
+        Files.writeString(file, """
+                Game 1: 1000 red, 1000 green; 1000 blue
+                Game 2: 1000 red, 1000 green, 1000 blue
+                Game 3: 3000 red; 3000 green, 3000 blue
+                """);
+        Input input = Input.of(file);
+
+        long expected = 2 * 1_000_000_000L + 27_000_000_000L;
+        assertEquals(expected, Day2.calculateMinimumCubes(Day2.parseGames(input)));
+        Day2.Incremental incremental = new Day2.Incremental(new Day2.CubeHolder(12, 13, 14));
+        input.forEachLine(incremental::accept);
+        assertEquals(expected, incremental.part2());
+    }
+}
@@ -0,0 +1,124 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Day3Test {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void smallSchematicsMatchNaiveScan() throws IOException {
+        for (long seed = 0; seed < 10; seed++) {
+            assertAllAgree(generate(70, seed));
+        }
+    }
+
+    /**
+     * Tall enough to be split into bands.
+     */
+    @Test
+    void bandsMatchStreamingOnLargeSchematic() throws IOException {
+        assertAllAgree(generate(1200, 1));
+    }
+
+    @Test
+    void numbersAtTheEdges() throws IOException {
+        Path file = directory.resolve("edges.txt");
+        Files.writeString(file, "12..34\n*....*\n5...67\n");
+
+        Day3.Parts parts = assertAllAgree(file);
+        assertEquals(12 + 34 + 5 + 67, parts.partNrSum());
+        assertEquals(12 * 5 + 34 * 67, parts.gearRatioSum());
+    }
+
+    @Test
+    void sumsDontOverflow() throws IOException {
+        Path file = directory.resolve("gears.txt");
+        String gears = "999*999.".repeat(10);
+        Files.writeString(file, (gears + "\n" + ".".repeat(gears.length()) + "\n").repeat(300));
+
+        Day3.Parts parts = assertAllAgree(file);
+        assertEquals(3000 * 2 * 999L, parts.partNrSum());
+        assertEquals(3000 * 999L * 999, parts.gearRatioSum());
+    }
+
+    private Path generate(int size, long seed) throws IOException {
+        Path file = directory.resolve("day3-" + size + "-" + seed + ".txt");
+        InputGenerators.write(3, size, seed, file);
+        return file;
+    }
+
+    private static Day3.Parts assertAllAgree(Path file) throws IOException {
+        Input input = Input.of(file);
+        Day3.Engine engine = Day3.buildEngine(input);
+        Day3.Parts parts = engine.scan();
+        assertEquals(parts, engine.parts());
+        assertEquals(parts.partNrSum(), Day3.calculate(engine));
+        assertEquals(parts.gearRatioSum(), Day3.calculateGearRatio(engine));
+
+        Day3.Incremental incremental = new Day3.Incremental(partNr -> {}, gearRatio -> {});
+        input.forEachLine(incremental::accept);
+        incremental.finish();
+        assertEquals(parts.partNrSum(), incremental.part1());
+        assertEquals(parts.gearRatioSum(), incremental.part2());
+
+        assertEquals(naive(Files.readAllLines(file)), parts);
+        return parts;
+    }
+
+    private static Day3.Parts naive(List<String> rows) {
+        long partNrSum = 0;
+        Map<Long, long[]> gears = new HashMap<>();
+        int width = rows.get(0).length();
+        for (int y = 0; y < rows.size(); y++) {
+            String row = rows.get(y);
+            for (int x = 0; x < width; x++) {
+                if (!Character.isDigit(row.charAt(x))) {
+                    continue;
+                }
+                int end = x;
+                while (end < width && Character.isDigit(row.charAt(end))) {
+                    end++;
+                }
+                long partNr = Long.parseLong(row.substring(x, end));
+                boolean isPartNr = false;
+                for (int ny = y - 1; ny <= y + 1; ny++) {
+                    for (int nx = x - 1; nx <= end; nx++) {
+                        if (ny < 0 || ny >= rows.size() || nx < 0 || nx >= width) {
+                            continue;
+                        }
+                        char c = rows.get(ny).charAt(nx);
+                        isPartNr |= c != '.' && !Character.isDigit(c);
+                        if (c == '*') {
+                            long[] gear = gears.computeIfAbsent((long) ny * width + nx, key -> new long[]{0, 1});
+                            gear[0]++;
+                            gear[1] *= partNr;
+                        }
+                    }
+                }
+                if (isPartNr) {
+                    partNrSum += partNr;
+                }
+                x = end;
+            }
+        }
+        long gearRatioSum = 0;
+        for (long[] gear : gears.values()) {
+            if (gear[0] == 2) {
+                gearRatioSum += gear[1];
+            }
+        }
+        return new Day3.Parts(partNrSum, gearRatioSum);
+    }
+}
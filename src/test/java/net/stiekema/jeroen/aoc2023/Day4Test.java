@@ -0,0 +1,98 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Day4Test {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bitsetsMatchNaiveSets() throws IOException {
+        for (long seed = 0; seed < 5; seed++) {
+            Path file = directory.resolve("day4-" + seed + ".txt");
+            InputGenerators.write(4, 2_000, seed, file);
+            assertAllAgree(file);
+        }
+    }
+
+    @Test
+    void numbersAroundTheWordBoundary() throws IOException {
+        Path file = directory.resolve("cards.txt");
+        Files.writeString(file, """
+                Card 1:  0 63 64 127 |  0 63 64 127  5
+                Card 2: 62 65 100 | 63 64 101  1
+                Card 3: 99 | 99
+                """);
+
+        List<Day4.Card> cards = assertAllAgree(file);
+        assertEquals(4, cards.get(0).calculateWinningNumbers());
+        assertEquals(0, cards.get(1).calculateWinningNumbers());
+    }
+
+    @Test
+    void rejectsScoresThatOverflow() throws IOException {
+        String numbers = IntStream.range(0, 70).mapToObj(Integer::toString).collect(Collectors.joining(" "));
+        String highest = IntStream.range(0, 63).mapToObj(Integer::toString).collect(Collectors.joining(" "));
+        Path file = directory.resolve("cards.txt");
+        Files.writeString(file, "Card 1: " + highest + " | " + highest + "\n"
+                + "Card 2: " + highest + " | " + highest + "\n"
+                + "Card 3: " + numbers + " | " + numbers + "\n");
+        Input input = Input.of(file);
+        List<Day4.Card> cards = Day4.parseCards(input);
+
+        assertEquals(1L << 62, cards.get(0).calculateScore());
+        assertThrows(ArithmeticException.class, () -> Day4.calculateTotalScore(cards.subList(0, 2)));
+        assertEquals(70, cards.get(2).calculateWinningNumbers());
+        assertThrows(ArithmeticException.class, () -> cards.get(2).calculateScore());
+        assertEquals(1 + 2 + 4, Day4.calculateTotalNrOfCards(cards));
+
+        Day4.Incremental incremental = new Day4.Incremental();
+        assertThrows(ArithmeticException.class, () -> input.forEachLine(incremental::accept));
+    }
+
+    private static List<Day4.Card> assertAllAgree(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        int[] matches = lines.stream().mapToInt(Day4Test::naiveMatches).toArray();
+        long score = Arrays.stream(matches).mapToLong(match -> match > 0 ? 1L << (match - 1) : 0).sum();
+        long[] copies = new long[matches.length];
+        Arrays.fill(copies, 1);
+        for (int card = 0; card < matches.length; card++) {
+            for (int won = card + 1; won <= card + matches[card] && won < matches.length; won++) {
+                copies[won] += copies[card];
+            }
+        }
+
+        Input input = Input.of(file);
+        List<Day4.Card> cards = Day4.parseCards(input);
+        assertEquals(score, Day4.calculateTotalScore(cards));
+        assertEquals(Arrays.stream(copies).sum(), Day4.calculateTotalNrOfCards(cards));
+
+        Day4.Incremental incremental = new Day4.Incremental();
+        input.forEachLine(incremental::accept);
+        assertEquals(score, incremental.part1());
+        assertEquals(Arrays.stream(copies).sum(), incremental.part2());
+        return cards;
+    }
+
+    private static int naiveMatches(String line) {
+        String[] sides = line.substring(line.indexOf(':') + 1).split("\\|");
+        Set<String> numbers = Arrays.stream(sides[0].trim().split("\\s+")).collect(Collectors.toSet());
+        Set<String> winning = Arrays.stream(sides[1].trim().split("\\s+")).collect(Collectors.toSet());
+        numbers.retainAll(winning);
+        return numbers.size();
+    }
+}
@@ -0,0 +1,400 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Day5Test {
+
+    private static final List<String> CATEGORIES = List.of("seed", "soil", "fertilizer", "water", "light", "temperature",
+            "humidity", "location");
+    private static final int RANGE = 100;
+
+    private static final String ALMANAC_WITH_EMPTY_ENTRY = """
+            seeds: 0 30 40 5
+
+            seed-to-soil map:
+            60 0 10
+            100 20 0
+
+            soil-to-location map:
+            0 60 5
+            7 7 0
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void destinationsSkipEmptyEntries() {
+        Day5.AlmanacMap map = new Day5.AlmanacMap(List.of(
+                new Day5.AlmanacMapEntry(20, 100, 0),
+                new Day5.AlmanacMapEntry(0, 50, 10)));
+
+        assertEquals(List.of(new Day5.SeedEntry(50, 10), new Day5.SeedEntry(10, 20)),
+                map.getDestinations(List.of(new Day5.SeedEntry(0, 30))));
+    }
+
+    @Test
+    void rangesMatchSeedBySeedWithEmptyEntries() throws IOException {
+        Day5.Almanac almanac = parse(ALMANAC_WITH_EMPTY_ENTRY);
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+
+        assertEquals(Day5.calculateLowestLocationNr(almanac, seeds), Day5.calculateLowestLocationNrOfRanges(almanac, seeds));
+        assertEquals(0, Day5.calculateLowestLocationNrOfRanges(almanac, seeds));
+    }
+
+    @Test
+    void composedMapMatchesChainedMaps() throws IOException {
+        SplittableRandom random = new SplittableRandom(21);
+        for (int i = 0; i < 200; i++) {
+            List<List<Day5.AlmanacMapEntry>> maps = randomMaps(random);
+            Day5.PiecewiseLinearMap composed = parse(format(new long[0], maps)).seedToLocation();
+
+            for (long seedNr = 0; seedNr < RANGE * 2; seedNr++) {
+                assertEquals(chain(maps, seedNr), composed.get(seedNr));
+            }
+            long from = random.nextLong(RANGE * 2);
+            long to = from + random.nextLong(1, RANGE);
+            long lowest = Long.MAX_VALUE;
+            for (long seedNr = from; seedNr < to; seedNr++) {
+                lowest = Math.min(lowest, chain(maps, seedNr));
+            }
+            assertEquals(lowest, composed.lowestDestination(from, to));
+        }
+    }
+
+    @Test
+    void frozenMapIgnoresEmptyEntryWithSameStart() {
+        Day5.FrozenAlmanacMap frozen = new Day5.AlmanacMap(List.of(
+                new Day5.AlmanacMapEntry(10, 50, 5),
+                new Day5.AlmanacMapEntry(10, 99, 0))).freeze();
+
+        assertEquals(1, frozen.size());
+        assertTrue(frozen.covers(10));
+        assertEquals(52, frozen.getDestination(12));
+        assertFalse(frozen.covers(15));
+    }
+
+    @Test
+    void everyEngineLetsTheLowestSourceWin() throws IOException {
+        for (String entries : List.of("1000 0 100\n500 10 5\n", "500 10 5\n1000 0 100\n")) {
+            for (long seed : new long[] {50, 12}) {
+                Day5.Almanac almanac = parse("seeds: " + seed + " 1\n\nseed-to-location map:\n" + entries);
+                List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+                long expected = 1000 + seed;
+
+                assertEquals(expected, Day5.calculateLowestLocationNr(almanac, seeds));
+                assertEquals(expected, Day5.calculateLowestLocationNrComposed(almanac, seeds));
+                assertEquals(expected, Day5.calculateLowestLocationNrOfRanges(almanac, seeds));
+                assertEquals(expected, Day5.calculateLowestLocationNrChosen(almanac, seeds));
+                assertEquals(expected, new Day5.ReverseSearch(almanac, seeds).search());
+            }
+        }
+    }
+
+    @Test
+    void frozenMapMatchesLinearLookUp() {
+        SplittableRandom random = new SplittableRandom(22);
+        Random shuffle = new Random(22);
+        for (int i = 0; i < 200; i++) {
+            for (List<Day5.AlmanacMapEntry> entries : randomMaps(random)) {
+                List<Day5.AlmanacMapEntry> shuffled = new ArrayList<>(entries);
+                Collections.shuffle(shuffled, shuffle);
+                Day5.FrozenAlmanacMap frozen = new Day5.AlmanacMap(shuffled).freeze();
+
+                for (long value = 0; value < RANGE * 2; value++) {
+                    assertEquals(lookUp(entries, value), frozen.getDestination(value));
+                    assertEquals(covers(entries, value), frozen.covers(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    void composedMapsBetweenAnyCategoriesMatchChainedMaps() throws IOException {
+        SplittableRandom random = new SplittableRandom(25);
+        for (int i = 0; i < 50; i++) {
+            List<List<Day5.AlmanacMapEntry>> maps = randomMaps(random);
+            Day5.Almanac almanac = parse(format(new long[0], maps));
+
+            for (int source = 0; source < CATEGORIES.size(); source++) {
+                for (int target = source; target < CATEGORIES.size(); target++) {
+                    Day5.PiecewiseLinearMap composed = almanac.composedMap(CATEGORIES.get(source), CATEGORIES.get(target));
+                    for (long value = 0; value < RANGE * 2; value++) {
+                        assertEquals(chain(maps.subList(source, target), value), composed.get(value));
+                    }
+                    assertSame(composed, almanac.composedMap(CATEGORIES.get(source), CATEGORIES.get(target)));
+                }
+            }
+            assertSame(almanac.seedToLocation(), almanac.composedMap("seed", "location"));
+            assertThrows(IllegalArgumentException.class, () -> almanac.composedMap("humidity", "soil"));
+        }
+    }
+
+    @Test
+    void composedMapTakesShortestChain() throws IOException {
+        Day5.Almanac almanac = parse("""
+                seeds: 1 2
+
+                seed-to-soil map:
+                10 0 5
+
+                soil-to-water map:
+                20 10 5
+
+                seed-to-water map:
+                100 0 5
+
+                water-to-location map:
+                0 100 10
+                """);
+
+        assertEquals(102, almanac.composedMap("seed", "water").get(2));
+        assertEquals(22, almanac.composedMap("soil", "water").get(12));
+        assertEquals(2, almanac.composedMap("seed", "location").get(2));
+        assertEquals(22, almanac.composedMap("soil", "location").get(12));
+        assertThrows(IllegalArgumentException.class, () -> almanac.composedMap("seed", "light"));
+    }
+
+    @Test
+    void bruteForceMatchesSeedBySeed() throws IOException {
+        SplittableRandom random = new SplittableRandom(23);
+        for (int i = 0; i < 50; i++) {
+            Day5.Almanac almanac = parse(format(randomSeeds(random), randomMaps(random)));
+            List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+            Day5.BruteForce bruteForce = new Day5.BruteForce(random.nextLong(1, 20), null, Duration.ofHours(1), line -> {});
+
+            assertEquals(Day5.calculateLowestLocationNr(almanac, seeds), bruteForce.run(almanac, seeds));
+        }
+    }
+
+    @Test
+    void bruteForceResumesFromCheckpoint() throws IOException {
+        SplittableRandom random = new SplittableRandom(24);
+        Day5.Almanac almanac = parse(format(new long[] {0, 150, 170, 30}, randomMaps(random)));
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+        Path checkpoint = directory.resolve("brute-force.checkpoint");
+        List<String> progress = new ArrayList<>();
+        Day5.BruteForce interrupted = new Day5.BruteForce(3, checkpoint, Duration.ZERO, line -> {
+            progress.add(line);
+            if (progress.size() == 10) {
+                throw new IllegalStateException("interrupted");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> interrupted.run(almanac, seeds));
+        assertTrue(Files.exists(checkpoint));
+
+        progress.clear();
+        Day5.BruteForce resumed = new Day5.BruteForce(3, checkpoint, Duration.ofHours(1), progress::add);
+        assertEquals(Day5.calculateLowestLocationNr(almanac, seeds), resumed.run(almanac, seeds));
+        assertTrue(progress.get(0).startsWith("resuming from"), progress.get(0));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    void bruteForceStartsOverOnCheckpointOfAnotherRun() throws IOException {
+        SplittableRandom random = new SplittableRandom(25);
+        Day5.Almanac almanac = parse(format(new long[] {0, 150, 170, 30}, randomMaps(random)));
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+        Path checkpoint = directory.resolve("brute-force.checkpoint");
+        Day5.BruteForce interrupted = new Day5.BruteForce(3, checkpoint, Duration.ZERO, line -> {
+            throw new IllegalStateException("interrupted");
+        });
+        assertThrows(IllegalStateException.class, () -> interrupted.run(almanac, seeds));
+
+        List<String> progress = new ArrayList<>();
+        Day5.BruteForce otherChunkSize = new Day5.BruteForce(4, checkpoint, Duration.ofHours(1), progress::add);
+        assertEquals(Day5.calculateLowestLocationNr(almanac, seeds), otherChunkSize.run(almanac, seeds));
+        assertTrue(progress.get(0).endsWith("is of another run, starting over"), progress.get(0));
+    }
+
+    @Test
+    void reverseSearchMatchesSeedBySeed() throws IOException {
+        SplittableRandom random = new SplittableRandom(24);
+        for (int i = 0; i < 3000; i++) {
+            Day5.Almanac almanac = parse(format(randomSeeds(random), randomMaps(random)));
+            List<Day5.SeedEntry> seeds = random.nextBoolean() ? Day5.seedsPart1(almanac) : Day5.seedsPart2(almanac);
+            long expected = Day5.calculateLowestLocationNr(almanac, seeds);
+
+            assertEquals(expected, new Day5.ReverseSearch(almanac, seeds).search());
+            assertEquals(expected, Day5.calculateLowestLocationNrChosen(almanac, seeds));
+            assertEquals(expected, Day5.calculateLowestLocationNrOfRanges(almanac, seeds));
+        }
+    }
+
+    @Test
+    void reverseSearchFollowsEveryOverlappingSource() throws IOException {
+        Day5.Almanac almanac = parse("""
+                seeds: 5 10
+
+                seed-to-location map:
+                0 10 5
+                0 20 5
+                0 30 5
+                """);
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+
+        assertEquals(0, new Day5.ReverseSearch(almanac, seeds).search());
+    }
+
+    /**
+     * Seeds 10 to 14 are listed as going to 0, but the entry starting at 0 shadows that, so location 0 has no seed.
+     */
+    @Test
+    void reverseSearchSkipsShadowedSources() throws IOException {
+        Day5.Almanac almanac = parse("""
+                seeds: 10 5
+
+                seed-to-location map:
+                1000 0 100
+                0 10 5
+                """);
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+        Day5.BruteForce bruteForce = new Day5.BruteForce(2, null, Duration.ofHours(1), line -> {});
+
+        assertEquals(1010, bruteForce.run(almanac, seeds));
+        assertEquals(1010, new Day5.ReverseSearch(almanac, seeds).search());
+    }
+
+    @Test
+    void reverseSearchMatchesBruteForceWithOverlappingSources() throws IOException {
+        SplittableRandom random = new SplittableRandom(26);
+        for (int i = 0; i < 300; i++) {
+            Day5.Almanac almanac = parse(format(randomSeeds(random), randomMaps(random)));
+            List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+            long chunkSize = random.nextLong(1, 20);
+            Day5.BruteForce bruteForce = new Day5.BruteForce(chunkSize, null, Duration.ofHours(1), line -> {});
+
+            assertEquals(bruteForce.run(almanac, seeds), new Day5.ReverseSearch(almanac, seeds).search());
+        }
+    }
+
+    @Test
+    void reverseSearchWithoutSeeds() throws IOException {
+        Day5.Almanac almanac = parse(ALMANAC_WITH_EMPTY_ENTRY.replace("seeds: 0 30 40 5", "seeds: 5 0"));
+        List<Day5.SeedEntry> seeds = Day5.seedsPart2(almanac);
+
+        assertEquals(Long.MAX_VALUE, new Day5.ReverseSearch(almanac, seeds).search());
+        assertEquals(Long.MAX_VALUE, Day5.calculateLowestLocationNrChosen(almanac, seeds));
+    }
+
+    @Test
+    void estimatedCostCountsOverlappingSources() throws IOException {
+        String disjoint = """
+                seeds: 10 1
+
+                seed-to-soil map:
+                50 10 5
+                100 20 5
+                110 30 5
+
+                soil-to-location map:
+                200 50 5
+                """;
+        String overlapping = disjoint.replace("100 20 5", "50 20 5").replace("110 30 5", "50 30 5");
+        List<Day5.SeedEntry> seeds = List.of(new Day5.SeedEntry(10, 1));
+
+        assertTrue(Day5.ReverseSearch.estimatedCost(parse(overlapping), seeds)
+                > Day5.ReverseSearch.estimatedCost(parse(disjoint), seeds));
+    }
+
+    /**
+     * Pairs of seed range start and length, like the seeds line of part 2.
+     */
+    static long[] randomSeeds(SplittableRandom random) {
+        long[] result = new long[2 * random.nextInt(1, 5)];
+        for (int i = 0; i < result.length; i += 2) {
+            result[i] = random.nextLong(RANGE * 2);
+            result[i + 1] = random.nextLong(RANGE / 2);
+        }
+        return result;
+    }
+
+    /**
+     * The seven maps from seed to location. Their entries are in order of source, may overlap on either side and are
+     * sometimes empty.
+     */
+    static List<List<Day5.AlmanacMapEntry>> randomMaps(SplittableRandom random) {
+        List<List<Day5.AlmanacMapEntry>> maps = new ArrayList<>();
+        for (int map = 0; map + 1 < CATEGORIES.size(); map++) {
+            List<Day5.AlmanacMapEntry> entries = new ArrayList<>();
+            long position = random.nextLong(10);
+            while (position < RANGE) {
+                long length = random.nextInt(5) == 0 ? 0 : random.nextLong(1, 30);
+                if (random.nextBoolean()) {
+                    entries.add(new Day5.AlmanacMapEntry(position, random.nextLong(RANGE), length));
+                }
+                // a step shorter than the entry makes the next one overlap it
+                position += random.nextInt(4) == 0 ? random.nextLong(1, length + 2) : length + random.nextLong(1, 10);
+            }
+            maps.add(entries);
+        }
+        return maps;
+    }
+
+    static String format(long[] seedValues, List<List<Day5.AlmanacMapEntry>> maps) {
+        StringBuilder text = new StringBuilder("seeds:");
+        for (long seedValue : seedValues) {
+            text.append(' ').append(seedValue);
+        }
+        text.append('\n');
+        for (int map = 0; map < maps.size(); map++) {
+            text.append('\n').append(CATEGORIES.get(map)).append("-to-").append(CATEGORIES.get(map + 1)).append(" map:\n");
+            for (Day5.AlmanacMapEntry entry : maps.get(map)) {
+                text.append(entry.destination()).append(' ').append(entry.source()).append(' ').append(entry.length()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    static long chain(List<List<Day5.AlmanacMapEntry>> maps, long value) {
+        for (List<Day5.AlmanacMapEntry> entries : maps) {
+            value = lookUp(entries, value);
+        }
+        return value;
+    }
+
+    /**
+     * The first entry covering {@code value} maps it, as {@link #randomMaps} lists entries in order of source.
+     */
+    static long lookUp(List<Day5.AlmanacMapEntry> entries, long value) {
+        for (Day5.AlmanacMapEntry entry : entries) {
+            if (entry.hasRecord(value)) {
+                return entry.getValue(value);
+            }
+        }
+        return value;
+    }
+
+    static boolean covers(List<Day5.AlmanacMapEntry> entries, long value) {
+        for (Day5.AlmanacMapEntry entry : entries) {
+            if (entry.hasRecord(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Day5.Almanac parse(String text) throws IOException {
+        Path file = directory.resolve("almanac.txt");
+        Files.writeString(file, text);
+        return Day5.parseAlmanac(Input.of(file));
+    }
+}
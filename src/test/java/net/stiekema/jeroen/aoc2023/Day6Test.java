@@ -0,0 +1,34 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Day6Test {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void skipsBlankAndExtraLines() throws IOException {
+        Day6.Races expected = Day6.parseRaces(Input.of("/day6-test.txt"));
+
+        assertEquals(expected, parse("Time:      7  15   30\nDistance:  9  40  200\n"));
+        assertEquals(expected, parse("Time:      7  15   30\nDistance:  9  40  200\n\n"));
+        assertEquals(expected, parse("\nTime:      7  15   30\n\nDistance:  9  40  200\nTime: 1 2 3\n"));
+        assertEquals(288, Day6.calculate(expected.records()));
+        assertEquals(71503, Day6.calculate(List.of(expected.combinedRecord())));
+    }
+
+    private Day6.Races parse(String text) throws IOException {
+        Path file = directory.resolve("races.txt");
+        Files.writeString(file, text);
+        return Day6.parseRaces(Input.of(file));
+    }
+}
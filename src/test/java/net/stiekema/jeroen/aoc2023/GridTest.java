@@ -0,0 +1,73 @@
+package net.stiekema.jeroen.aoc2023;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void parsesLinesIntoPaddedCells() throws IOException {
+        Grid grid = parse("ab\ncd\nef\n", 1);
+
+        assertEquals(2, grid.width());
+        assertEquals(3, grid.height());
+        assertEquals(4 * 5, grid.size());
+        assertEquals('c', grid.get(0, 1));
+        assertEquals('.', grid.get(grid.neighbour(grid.index(0, 0), Grid.NORTH_WEST)));
+        assertEquals('d', grid.get(grid.neighbour(grid.index(1, 2), Grid.NORTH)));
+        assertEquals("ab\ncd\nef\n", grid.toString());
+    }
+
+    @Test
+    void keepsGrowingPastItsFirstAllocation() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int y = 0; y < 100; y++) {
+            text.append(y % 10).append(y % 10).append(y % 10).append('\n');
+        }
+        Grid grid = parse(text.toString(), 2);
+
+        assertEquals(100, grid.height());
+        for (int y = 0; y < 100; y++) {
+            assertEquals('0' + y % 10, grid.get(2, y));
+        }
+        assertEquals('.', grid.get(grid.index(0, 99) + 2 * grid.stride()));
+    }
+
+    @Test
+    void rejectsLinesOfAnotherLength() {
+        assertThrows(IllegalArgumentException.class, () -> parse("abc\nab\n", 0));
+    }
+
+    @Test
+    void rejectsGridsThatDoNotFitInOneArray() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Grid.of(new byte[0], 100_000, 100_000, 1));
+        assertTrue(e.getMessage().contains("at most"));
+    }
+
+    @Test
+    void generatorsOnlyWriteGridsThatFit() {
+        long largest = InputGenerators.MAX_GRID_SIZE + 2;
+        assertTrue(largest * largest <= Grid.MAX_CELLS);
+        for (int day : new int[]{3, 10, 11}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> InputGenerators.write(day, 100_000, 1, directory.resolve("day" + day + ".txt")));
+        }
+    }
+
+    private Grid parse(String text, int halo) throws IOException {
+        Path file = Files.writeString(directory.resolve("grid.txt"), text);
+        return Grid.parse(Input.of(file), halo, (byte) '.');
+    }
+}